@@ -0,0 +1,81 @@
+package com.skhanra52.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generated benchmark inputs. The files are written once to java.io.tmpdir and reused by later forks and runs,
+ * so the 1 GB input is only generated the first time.
+ */
+final class BenchmarkFiles {
+
+    private static final List<String> NAMES = List.of("John Doe", "Jane Smith", "Michael Brown", "Emily Davis",
+            "Charlotte Hill", "Daniel Wilson", "Olivia Moore", "James Taylor");
+    private static final List<String> DEPARTMENTS = List.of("HR", "IT", "Finance", "Marketing", "Sales", "Support");
+    private static final List<String> STATES = List.of("NY", "CA", "TX", "WA", "FL", "IL");
+
+    private BenchmarkFiles() {
+    }
+
+    /**
+     * Parses the size parameter of the benchmarks: "1MB", "100MB", "1GB".
+     */
+    static long parseSize(String size) {
+        String value = size.trim().toUpperCase(Locale.ROOT);
+        if (value.endsWith("GB")) {
+            return Long.parseLong(value.substring(0, value.length() - 2)) << 30;
+        }
+        if (value.endsWith("MB")) {
+            return Long.parseLong(value.substring(0, value.length() - 2)) << 20;
+        }
+        if (value.endsWith("KB")) {
+            return Long.parseLong(value.substring(0, value.length() - 2)) << 10;
+        }
+        return Long.parseLong(value);
+    }
+
+    /**
+     * A file of at least the given size in the layout of files/fixedWidth.txt (header line plus 40 character rows),
+     * so every reader in the project, including the fixed-width ones, can run on it.
+     */
+    static Path fixedWidthFile(String size) {
+        long bytes = parseSize(size);
+        Path path = Path.of(System.getProperty("java.io.tmpdir"), "javaio-bench-fixedWidth-" + size + ".txt");
+        try {
+            if (Files.exists(path) && Files.size(path) >= bytes) {
+                return path;
+            }
+            Path partial = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".partial");
+            Random random = new Random(42);
+            try (BufferedWriter writer = Files.newBufferedWriter(partial, StandardCharsets.US_ASCII)) {
+                String header = "%-15s%-3s%-12s%-8s%-2s".formatted("Name", "Age", "Dept", "Salary", "ST");
+                writer.write(header);
+                writer.newLine();
+                long written = header.length() + 1;
+                while (written < bytes) {
+                    String line = "%-15s%3d%-12s%8d%-2s".formatted(
+                            NAMES.get(random.nextInt(NAMES.size())),
+                            random.nextInt(18, 70),
+                            DEPARTMENTS.get(random.nextInt(DEPARTMENTS.size())),
+                            random.nextInt(30_000, 150_000),
+                            STATES.get(random.nextInt(STATES.size())));
+                    writer.write(line);
+                    writer.newLine();
+                    written += line.length() + 1;
+                }
+            }
+            Files.move(partial, path, StandardCopyOption.REPLACE_EXISTING);
+            return path;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.skhanra52.benchmarks;
+
+import com.skhanra52.readinFiles.ChunkedLineSource;
+import com.skhanra52.readinFiles.FixedWidthReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Every way the readinFiles examples read a file, on the same generated input.
+ * <p>
+ * Throughput is reported in operations (whole file reads) per second, SampleTime gives the latency distribution of
+ * a single read, including p0.99. Each benchmark touches every character or line it reads, through the Blackhole,
+ * so none of them can skip the work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx4g"})
+public class ReaderBenchmark {
+
+    @Param({"1MB", "100MB", "1GB"})
+    public String size;
+
+    private Path path;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        path = BenchmarkFiles.fixedWidthFile(size);
+    }
+
+    @Benchmark
+    public void fileReaderRead(Blackhole blackhole) throws IOException {
+        try (FileReader reader = new FileReader(path.toFile())) {
+            int c;
+            while ((c = reader.read()) != -1) {
+                blackhole.consume(c);
+            }
+        }
+    }
+
+    @Benchmark
+    public void fileReaderReadCharArray(Blackhole blackhole) throws IOException {
+        try (FileReader reader = new FileReader(path.toFile())) {
+            char[] block = new char[1000];
+            int count;
+            while ((count = reader.read(block)) != -1) {
+                blackhole.consume(count);
+                blackhole.consume(block);
+            }
+        }
+    }
+
+    @Benchmark
+    public void bufferedReaderReadLine(Blackhole blackhole) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(path.toFile()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                blackhole.consume(line);
+            }
+        }
+    }
+
+    @Benchmark
+    public void bufferedReaderLines(Blackhole blackhole) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(path.toFile()))) {
+            reader.lines().forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public void scannerNextLine(Blackhole blackhole) throws IOException {
+        try (Scanner scanner = new Scanner(path)) {
+            while (scanner.hasNextLine()) {
+                blackhole.consume(scanner.nextLine());
+            }
+        }
+    }
+
+    @Benchmark
+    public void scannerFindAllRegex(Blackhole blackhole) throws IOException {
+        try (Scanner scanner = new Scanner(path)) {
+            scanner.findAll("(.{15})(.{3})(.{12})(.{8})(.{2}).*")
+                    .forEach(m -> blackhole.consume(m.group(3)));
+        }
+    }
+
+    @Benchmark
+    public void filesReadAllLines(Blackhole blackhole) throws IOException {
+        blackhole.consume(Files.readAllLines(path));
+    }
+
+    @Benchmark
+    public void filesLines(Blackhole blackhole) throws IOException {
+        try (Stream<String> lines = Files.lines(path)) {
+            lines.forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public void filesLinesParallel(Blackhole blackhole) throws IOException {
+        try (Stream<String> lines = Files.lines(path)) {
+            lines.parallel().forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public void filesReadString(Blackhole blackhole) throws IOException {
+        blackhole.consume(Files.readString(path));
+    }
+
+    @Benchmark
+    public void filesReadAllBytesToString(Blackhole blackhole) throws IOException {
+        blackhole.consume(new String(Files.readAllBytes(path)));
+    }
+
+    @Benchmark
+    public void filesNewBufferedReader(Blackhole blackhole) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                blackhole.consume(line);
+            }
+        }
+    }
+
+    @Benchmark
+    public void chunkedLineSource(Blackhole blackhole) throws IOException {
+        new ChunkedLineSource(path).lines().forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public void fixedWidthReader(Blackhole blackhole) throws IOException {
+        FixedWidthReader reader = new FixedWidthReader(FixedWidthReader.EMPLOYEE_LAYOUT);
+        reader.forEach(path, 1, row -> blackhole.consume(row.getLong(3)));
+    }
+}
@@ -0,0 +1,176 @@
+package com.skhanra52.benchmarks;
+
+import com.skhanra52.writingFiles.student.AppendLog;
+import com.skhanra52.writingFiles.student.Course;
+import com.skhanra52.writingFiles.student.EngagementCsvWriter;
+import com.skhanra52.writingFiles.student.ShardedCsvExporter;
+import com.skhanra52.writingFiles.student.Student;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The writer examples of WriteFileMain, each writing the student engagement CSV of the given size.
+ * <p>
+ * The students come from a fixed pool which is repeated until the output reaches the size, so the rows are formatted
+ * the same way WriteFileMain does it (getEngagementRecords() for the String based writers) without needing millions
+ * of Student objects in memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx4g"})
+public class WriterBenchmark {
+
+    private static final String HEADER = """
+            Student Id, Country Code, Enrolled Year, Age, Gender, Experienced, Course code,\
+            Engagement Month, Engagement Year, Engagement Type
+            """;
+    private static final int POOL_SIZE = 10_000;
+
+    @Param({"1MB", "100MB", "1GB"})
+    public String size;
+
+    private List<Student> pool;
+    private int studentsPerFile;
+    private Path directory;
+    private Path path;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Course jmc = new Course("JMC", "Java MasterClass");
+        Course pymc = new Course("PYMC", "Python MasterClass");
+        pool = Stream.generate(() -> Student.getRandomStudent(jmc, pymc)).limit(POOL_SIZE).toList();
+        long poolBytes = pool.stream()
+                .flatMap(student -> student.getEngagementRecords().stream())
+                .mapToLong(record -> record.length() + 1)
+                .sum();
+        studentsPerFile = (int) Math.max(1, BenchmarkFiles.parseSize(size) * POOL_SIZE / poolBytes);
+        directory = Files.createTempDirectory("javaio-bench-writers");
+        path = directory.resolve("students.csv");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private Stream<Student> students() {
+        return Stream.iterate(0, i -> i + 1).limit(studentsPerFile).map(i -> pool.get(i % POOL_SIZE));
+    }
+
+    @Benchmark
+    public void filesWriteList() throws IOException {
+        List<String> data = new ArrayList<>();
+        data.add(HEADER);
+        students().forEach(student -> data.addAll(student.getEngagementRecords()));
+        Files.write(path, data);
+    }
+
+    @Benchmark
+    public void bufferedWriter() throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            writer.write(HEADER);
+            for (Student student : (Iterable<Student>) students()::iterator) {
+                for (String record : student.getEngagementRecords()) {
+                    writer.write(record);
+                    writer.newLine();
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void fileWriter() throws IOException {
+        try (FileWriter writer = new FileWriter(path.toFile())) {
+            writer.write(HEADER);
+            for (Student student : (Iterable<Student>) students()::iterator) {
+                for (String record : student.getEngagementRecords()) {
+                    writer.write(record);
+                    writer.write(System.lineSeparator());
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void printWriter() throws IOException {
+        try (PrintWriter writer = new PrintWriter(path.toFile())) {
+            writer.write(HEADER);
+            for (Student student : (Iterable<Student>) students()::iterator) {
+                for (String record : student.getEngagementRecords()) {
+                    writer.println(record);
+                }
+            }
+        }
+    }
+
+    /**
+     * One open/write/close per record, the last example in WriteFileMain. Expect this to be slow on big sizes.
+     */
+    @Benchmark
+    public void filesWriteStringAppend() throws IOException {
+        Files.writeString(path, HEADER);
+        for (Student student : (Iterable<Student>) students()::iterator) {
+            for (String record : student.getEngagementRecords()) {
+                Files.writeString(path, record + System.lineSeparator(), StandardOpenOption.APPEND);
+            }
+        }
+    }
+
+    @Benchmark
+    public void engagementCsvWriter() throws IOException {
+        try (EngagementCsvWriter writer = new EngagementCsvWriter(path)) {
+            writer.writeHeader(HEADER);
+            writer.writeAll(students());
+        }
+    }
+
+    @Benchmark
+    public void shardedCsvExporter() throws IOException {
+        new ShardedCsvExporter(true).export(students().toList(), HEADER, path);
+    }
+
+    @Benchmark
+    public void appendLog() throws IOException {
+        Files.deleteIfExists(path);
+        try (AppendLog log = new AppendLog(path)) {
+            log.append(HEADER);
+            for (Student student : (Iterable<Student>) students()::iterator) {
+                for (String record : student.getEngagementRecords()) {
+                    log.append(record);
+                }
+            }
+            log.sync();
+        }
+    }
+}
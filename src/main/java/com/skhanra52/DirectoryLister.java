@@ -0,0 +1,367 @@
+package com.skhanra52;
+
+import com.skhanra52.managingFileOper.FileOperationFailure;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Directory listings with the attributes of every entry, read with one metadata call per entry.
+ * <p>
+ * listDir() in {@link FileListingOneMain} calls Files.isDirectory(), Files.getLastModifiedTime() and Files.size()
+ * for every entry, three stat calls for what one readAttributes() returns, and Main.extraInfo() reads the "*" map
+ * of attributes. Here every entry is read once, as BasicFileAttributes, or as PosixFileAttributes when
+ * {@link #setPosix(boolean)} asks for permissions, owner and group (PosixFileAttributes extends the basic ones, so
+ * that is still one call). Without POSIX attributes {@link #walk(Path, int)} takes the attributes walkFileTree()
+ * hands out, like Files.find() does, and doesn't read them again. Those are only the basic attributes, even on Linux
+ * and macOS, so in POSIX mode the folders are listed with newDirectoryStream() instead and every entry is read once,
+ * as PosixFileAttributes.
+ * <p>
+ * The attributes are copied into compact {@link Entry} records, so a listing of a million files doesn't keep a
+ * million attribute objects with their file keys and times alive.
+ * <p>
+ * In parallel mode ({@link #setParallel(boolean)}) every directory is listed by its own fork-join task, and the
+ * attributes of a large directory are read in batches by several tasks. The entries still come back in walk order:
+ * a directory, then its entries, with the content of each sub-folder right after it.
+ * <p>
+ * Symbolic links are not followed. An entry that can't be read is recorded in {@link Listing#failures()}.
+ */
+public class DirectoryLister {
+
+    public enum Kind {
+        FILE, DIRECTORY, SYMBOLIC_LINK, OTHER
+    }
+
+    /**
+     * The attributes of one entry. permissions, owner and group are only read in POSIX mode, otherwise they are
+     * -1 and null.
+     */
+    public record Entry(Path path, Kind kind, long size, long lastModifiedMillis, int permissions, String owner,
+                        String group) {
+
+        public boolean isDirectory() {
+            return kind == Kind.DIRECTORY;
+        }
+
+        public FileTime lastModified() {
+            return FileTime.fromMillis(lastModifiedMillis);
+        }
+
+        public Set<PosixFilePermission> permissionSet() {
+            Set<PosixFilePermission> set = EnumSet.noneOf(PosixFilePermission.class);
+            for (PosixFilePermission permission : PosixFilePermission.values()) {
+                if ((permissions & (1 << permission.ordinal())) != 0) {
+                    set.add(permission);
+                }
+            }
+            return set;
+        }
+
+        /**
+         * Same layout as listDir() in FileListingOneMain.
+         */
+        @Override
+        public String toString() {
+            return "%s %5s %-10s %s".formatted(lastModified(), size, (isDirectory() ? "<DIR>" : ""), path);
+        }
+    }
+
+    public record Listing(List<Entry> entries, List<FileOperationFailure> failures) {
+    }
+
+    private static final int ENTRIES_PER_TASK = 1024;
+
+    private final ForkJoinPool pool;
+    private boolean posix;
+    private boolean parallel;
+
+    /**
+     * Parallel mode runs in the common fork-join pool.
+     */
+    public DirectoryLister() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Parallel mode runs in the given pool, give it more threads than cores for a network file system.
+     */
+    public DirectoryLister(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Also read the POSIX permissions, owner and group of every entry. Listings fail with
+     * UnsupportedOperationException on file systems without them (Windows).
+     */
+    public DirectoryLister setPosix(boolean posix) {
+        this.posix = posix;
+        return this;
+    }
+
+    /**
+     * List every directory in its own fork-join task, instead of on the calling thread.
+     */
+    public DirectoryLister setParallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * The entries of one directory, like Files.list().
+     */
+    public Listing list(Path directory) throws IOException {
+        return walk(directory, 1, false);
+    }
+
+    /**
+     * The start path and everything below it up to maxDepth levels deep, like Files.walk(start, maxDepth).
+     */
+    public Listing walk(Path start, int maxDepth) throws IOException {
+        return walk(start, maxDepth, true);
+    }
+
+    private Listing walk(Path start, int maxDepth, boolean includeStart) throws IOException {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("maxDepth must not be negative, was " + maxDepth);
+        }
+        Queue<FileOperationFailure> failures = new ConcurrentLinkedQueue<>();
+        List<Entry> entries = new ArrayList<>();
+        if (parallel) {
+            Entry root = entry(start, readAttributes(start));
+            if (includeStart) {
+                entries.add(root);
+            }
+            if (root.isDirectory() && maxDepth > 0) {
+                DirectoryTask task = new DirectoryTask(start, 1, maxDepth, failures);
+                pool.invoke(task);
+                task.flatten(entries);
+            }
+        } else if (posix) {
+            Entry root = entry(start, readAttributes(start));
+            if (includeStart) {
+                entries.add(root);
+            }
+            if (root.isDirectory() && maxDepth > 0) {
+                walkPosix(start, 1, maxDepth, entries, failures);
+            }
+        } else {
+            walkFileTree(start, maxDepth, includeStart, entries, failures);
+        }
+        return new Listing(Collections.unmodifiableList(entries), List.copyOf(failures));
+    }
+
+    private void walkFileTree(Path start, int maxDepth, boolean includeStart, List<Entry> entries,
+                              Queue<FileOperationFailure> failures) throws IOException {
+        Files.walkFileTree(start, EnumSet.noneOf(FileVisitOption.class), maxDepth, new SimpleFileVisitor<>() {
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (includeStart || !dir.equals(start)) {
+                    entries.add(entry(dir, attrs));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (includeStart || !file.equals(start)) {
+                    entries.add(entry(file, attrs)); // also the folders at maxDepth
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                failures.add(new FileOperationFailure(file, exc));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                if (exc != null) {
+                    failures.add(new FileOperationFailure(dir, exc));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * The sequential walk in POSIX mode, in the order walkFileTree() visits: each entry of a folder, with the content
+     * of a sub-folder right after it. The names are read before the sub-folders are entered, so only one directory
+     * stream is open at a time.
+     */
+    private void walkPosix(Path directory, int depth, int maxDepth, List<Entry> entries,
+                           Queue<FileOperationFailure> failures) {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                paths.add(path);
+            }
+        } catch (IOException e) {
+            failures.add(new FileOperationFailure(directory, e));
+        } catch (DirectoryIteratorException e) {
+            failures.add(new FileOperationFailure(directory, e.getCause()));
+        }
+        for (Path path : paths) {
+            Entry entry;
+            try {
+                entry = entry(path, readAttributes(path));
+            } catch (NoSuchFileException e) {
+                continue; // deleted since it was listed
+            } catch (IOException e) {
+                failures.add(new FileOperationFailure(path, e));
+                continue;
+            }
+            entries.add(entry);
+            if (entry.isDirectory() && depth < maxDepth) {
+                walkPosix(path, depth + 1, maxDepth, entries, failures);
+            }
+        }
+    }
+
+    private BasicFileAttributes readAttributes(Path path) throws IOException {
+        Class<? extends BasicFileAttributes> type = posix ? PosixFileAttributes.class : BasicFileAttributes.class;
+        return Files.readAttributes(path, type, LinkOption.NOFOLLOW_LINKS);
+    }
+
+    /**
+     * Copies the attributes into an Entry. In POSIX mode they were read by {@link #readAttributes(Path)}, so they
+     * are PosixFileAttributes.
+     */
+    private Entry entry(Path path, BasicFileAttributes attrs) {
+        Kind kind = attrs.isDirectory() ? Kind.DIRECTORY
+                : attrs.isRegularFile() ? Kind.FILE
+                : attrs.isSymbolicLink() ? Kind.SYMBOLIC_LINK
+                : Kind.OTHER;
+        if (!posix) {
+            return new Entry(path, kind, attrs.size(), attrs.lastModifiedTime().toMillis(), -1, null, null);
+        }
+        PosixFileAttributes posixAttrs = (PosixFileAttributes) attrs;
+        int permissions = 0;
+        for (PosixFilePermission permission : posixAttrs.permissions()) {
+            permissions |= 1 << permission.ordinal();
+        }
+        return new Entry(path, kind, attrs.size(), attrs.lastModifiedTime().toMillis(), permissions,
+                posixAttrs.owner().getName(), posixAttrs.group().getName());
+    }
+
+    /**
+     * Lists one directory: the names first, then the attributes, in batches when there are many, and then the
+     * sub-folders, each in its own task. Every task keeps its own entries, they are put together in walk order by
+     * {@link #flatten(List)} once all tasks are done.
+     */
+    private final class DirectoryTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final int depth;
+        private final int maxDepth;
+        private final Queue<FileOperationFailure> failures;
+        private Entry[] entries;
+        private DirectoryTask[] subdirectories;
+
+        private DirectoryTask(Path directory, int depth, int maxDepth,
+                              Queue<FileOperationFailure> failures) {
+            this.directory = directory;
+            this.depth = depth;
+            this.maxDepth = maxDepth;
+            this.failures = failures;
+        }
+
+        @Override
+        protected void compute() {
+            List<Path> paths = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path path : stream) {
+                    paths.add(path);
+                }
+            } catch (IOException e) {
+                failures.add(new FileOperationFailure(directory, e));
+            } catch (DirectoryIteratorException e) {
+                failures.add(new FileOperationFailure(directory, e.getCause()));
+            }
+
+            entries = new Entry[paths.size()];
+            List<AttributeTask> batches = new ArrayList<>();
+            for (int from = 0; from < paths.size(); from += ENTRIES_PER_TASK) {
+                batches.add(new AttributeTask(paths, from, Math.min(from + ENTRIES_PER_TASK, paths.size())));
+            }
+            invokeAll(batches);
+
+            subdirectories = new DirectoryTask[entries.length];
+            if (depth < maxDepth) {
+                List<DirectoryTask> tasks = new ArrayList<>();
+                for (int i = 0; i < entries.length; i++) {
+                    if (entries[i] != null && entries[i].isDirectory()) {
+                        subdirectories[i] = new DirectoryTask(entries[i].path(), depth + 1, maxDepth, failures);
+                        tasks.add(subdirectories[i]);
+                    }
+                }
+                invokeAll(tasks);
+            }
+        }
+
+        private void flatten(List<Entry> target) {
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i] != null) {
+                    target.add(entries[i]);
+                }
+                if (subdirectories[i] != null) {
+                    subdirectories[i].flatten(target);
+                }
+            }
+        }
+
+        private final class AttributeTask extends RecursiveAction {
+
+            private static final long serialVersionUID = 1L;
+
+            private final List<Path> paths;
+            private final int from;
+            private final int to;
+
+            private AttributeTask(List<Path> paths, int from, int to) {
+                this.paths = paths;
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected void compute() {
+                for (int i = from; i < to; i++) {
+                    Path path = paths.get(i);
+                    try {
+                        entries[i] = entry(path, readAttributes(path));
+                    } catch (NoSuchFileException e) {
+                        // deleted since it was listed
+                    } catch (IOException e) {
+                        failures.add(new FileOperationFailure(path, e));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.skhanra52;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent folder size index, so that {@link DirectorySizeCalculator#calculate(Path, DirectorySizeCache)} only
+ * lists the folders that changed since the last run.
+ * <p>
+ * There is one entry per directory, keyed by its absolute path: the directory's last modified time, the sizes of the
+ * files directly in it, the cumulative sizes and the names of its sub-folders.
+ * Creating, deleting or renaming an entry changes the modified time of the directory that holds it, so a folder
+ * whose modified time is the same as in the cache, and whose cached sub-folders are all still there, doesn't have to
+ * be listed again: its own sizes come from the cache and only its sub-folders are checked, one stat each.
+ * <p>
+ * The directory time does not change when an existing file is rewritten in place, so a file that grew without being
+ * replaced is only picked up once something else in its folder changes, or after {@link #invalidate(Path)}.
+ * Folders modified less than {@link #RACY_WINDOW_MILLIS} before they were scanned are never trusted, because on file
+ * systems with a coarse clock (FAT, some NFS servers) a change in the same tick would leave the time unchanged.
+ */
+public class DirectorySizeCache {
+
+    public static final long RACY_WINDOW_MILLIS = 2_000;
+
+    private static final int MAGIC = 0x44534331; // "DSC1"
+
+    /**
+     * What the cache remembers about one directory. modifiedMillis is -1 when the entry must not be trusted.
+     */
+    public record Entry(long modifiedMillis, long ownSize, int ownFileCount, long size, long fileCount,
+                        long directoryCount, List<String> childDirectories) {
+    }
+
+    private final Path file;
+    private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+
+    private DirectorySizeCache(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the cache from the given file, or starts an empty one if the file doesn't exist yet.
+     */
+    public static DirectorySizeCache load(Path file) throws IOException {
+        DirectorySizeCache cache = new DirectorySizeCache(file);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a folder size cache");
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Path path = Path.of(in.readUTF());
+                long modified = in.readLong();
+                long ownSize = in.readLong();
+                int ownFileCount = in.readInt();
+                long size = in.readLong();
+                long fileCount = in.readLong();
+                long directoryCount = in.readLong();
+                int childCount = in.readInt();
+                List<String> children = new ArrayList<>(childCount);
+                for (int c = 0; c < childCount; c++) {
+                    children.add(in.readUTF());
+                }
+                cache.entries.put(path, new Entry(modified, ownSize, ownFileCount, size, fileCount,
+                        directoryCount, List.copyOf(children)));
+            }
+        } catch (NoSuchFileException e) {
+            // first run, nothing cached yet
+        }
+        return cache;
+    }
+
+    /**
+     * Writes the cache to a temporary file and moves it over the old one, so a crash never leaves half a cache.
+     */
+    public void save() throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                List<Map.Entry<Path, Entry>> snapshot = new ArrayList<>(entries.entrySet());
+                out.writeInt(MAGIC);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<Path, Entry> mapping : snapshot) {
+                    Entry entry = mapping.getValue();
+                    out.writeUTF(mapping.getKey().toString());
+                    out.writeLong(entry.modifiedMillis());
+                    out.writeLong(entry.ownSize());
+                    out.writeInt(entry.ownFileCount());
+                    out.writeLong(entry.size());
+                    out.writeLong(entry.fileCount());
+                    out.writeLong(entry.directoryCount());
+                    out.writeInt(entry.childDirectories().size());
+                    for (String child : entry.childDirectories()) {
+                        out.writeUTF(child);
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * The cached entry of the directory at the given path (made absolute), or null.
+     */
+    public Entry get(Path directory) {
+        return entries.get(key(directory));
+    }
+
+    /**
+     * Cumulative size of the directory as of the last scan, or -1 if it isn't cached.
+     */
+    public long getSize(Path directory) {
+        Entry entry = get(directory);
+        return entry == null ? -1 : entry.size();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Forces the next scan to list the directory again. Its parents don't have to be invalidated, they are still
+     * re-aggregated from their sub-folders on every scan.
+     */
+    public void invalidate(Path directory) {
+        entries.computeIfPresent(key(directory), (path, entry) -> new Entry(-1, entry.ownSize(), entry.ownFileCount(),
+                entry.size(), entry.fileCount(), entry.directoryCount(), entry.childDirectories()));
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Replaces everything cached at or below root with the entries of a scan of root, which drops the folders
+     * that have been deleted since.
+     */
+    void replaceTree(Path root, Map<Path, Entry> scanned) {
+        entries.keySet().removeIf(path -> path.startsWith(root) && !scanned.containsKey(path));
+        entries.putAll(scanned);
+    }
+
+    /**
+     * Lookup by a path that is already a key, for the calculator's tasks.
+     */
+    Entry lookup(Path key) {
+        return entries.get(key);
+    }
+
+    static Path key(Path directory) {
+        return directory.toAbsolutePath().normalize();
+    }
+}
@@ -0,0 +1,402 @@
+package com.skhanra52;
+
+import com.skhanra52.managingFileOper.FileOperationFailure;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Parallel version of the StatsVisitor in {@link FileWalkerTwoMain}: the cumulative size of every folder of a tree.
+ * <p>
+ * Every directory is its own fork-join task. The task lists the directory once, adds up the sizes of its files and
+ * forks one task per sub-folder, so a wide tree keeps every worker busy. The tasks are CountedCompleters: nobody
+ * waits on a join, a directory is complete when the last of its children completes, and at that point it adds its
+ * total to its parent's AtomicLong counters. The rollup is therefore lock free and the sizes are correct for every
+ * level of the tree, not only the levels that get printed.
+ * <p>
+ * With a {@link DirectorySizeCache} the folders that haven't changed since the previous run are not listed again,
+ * see {@link #calculate(Path, DirectorySizeCache)}.
+ * <p>
+ * Like walkFileTree() (without FOLLOW_LINKS) symbolic links are not followed. A directory or file that can't be read
+ * is recorded in {@link Result#getFailures()} and the walk carries on, the way visitFileFailed() would.
+ */
+public class DirectorySizeCalculator {
+
+    private final ForkJoinPool pool;
+    private boolean recordFileSizes;
+
+    /**
+     * Runs the tasks in the common fork-join pool.
+     */
+    public DirectorySizeCalculator() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Runs the tasks in the given pool. On network file systems most of the time is spent waiting for the server,
+     * so a pool with more threads than cores is usually faster there.
+     */
+    public DirectorySizeCalculator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Also keep the size of every file of a listed folder, see {@link Directory#getFileSizes()}.
+     */
+    public DirectorySizeCalculator setRecordFileSizes(boolean recordFileSizes) {
+        this.recordFileSizes = recordFileSizes;
+        return this;
+    }
+
+    public Result calculate(Path root) throws IOException {
+        return calculate(root, null, null);
+    }
+
+    /**
+     * Calculates the sizes using and then updating the cache. A folder whose modified time and sub-folders match
+     * its cache entry is not listed, its own sizes are taken from the cache and only its sub-folders are looked at.
+     * Every folder of the tree is still re-aggregated, so the sizes of the parents of a changed folder are right all
+     * the way up to the root. The paths of the result are absolute, like the cache keys.
+     * <p>
+     * The cache is updated in memory, call {@link DirectorySizeCache#save()} to keep it for the next run.
+     */
+    public Result calculate(Path root, DirectorySizeCache cache) throws IOException {
+        Path start = DirectorySizeCache.key(root);
+        Result result = calculate(start, cache, new ConcurrentHashMap<>());
+        cache.replaceTree(start, result.scanned);
+        return result;
+    }
+
+    private Result calculate(Path root, DirectorySizeCache cache, Map<Path, DirectorySizeCache.Entry> scanned)
+            throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(root, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        if (!attrs.isDirectory()) {
+            throw new IOException(root + " is not a directory");
+        }
+        Result result = new Result(new Directory(root, null), cache, scanned, recordFileSizes);
+        pool.invoke(new DirectoryTask(null, result.root, attrs.lastModifiedTime().toMillis(), result));
+        return result;
+    }
+
+    /**
+     * Size of one folder. The cumulative values include every sub-folder, however deep.
+     */
+    public static final class Directory {
+
+        private final Path path;
+        private final Directory parent;
+        private final int depth;
+        private final List<Directory> children = new ArrayList<>();
+        private final AtomicLong size = new AtomicLong();
+        private final AtomicLong fileCount = new AtomicLong();
+        private final AtomicLong directoryCount = new AtomicLong();
+        private long ownSize;
+        private int ownFileCount;
+        private Map<Path, Long> fileSizes = Map.of();
+
+        private Directory(Path path, Directory parent) {
+            this.path = path;
+            this.parent = parent;
+            this.depth = parent == null ? 0 : parent.depth + 1;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * 0 for the folder the walk started at, 1 for its sub-folders and so on.
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        public Directory getParent() {
+            return parent;
+        }
+
+        public List<Directory> getChildren() {
+            return Collections.unmodifiableList(children);
+        }
+
+        /**
+         * Cumulative size in bytes of all the files in this folder and below.
+         */
+        public long getSize() {
+            return size.get();
+        }
+
+        public long getFileCount() {
+            return fileCount.get();
+        }
+
+        /**
+         * Number of folders below this one.
+         */
+        public long getDirectoryCount() {
+            return directoryCount.get();
+        }
+
+        /**
+         * Size of the files directly in this folder.
+         */
+        public long getOwnSize() {
+            return ownSize;
+        }
+
+        public int getOwnFileCount() {
+            return ownFileCount;
+        }
+
+        /**
+         * The size of every file directly in this folder, by file name. Only filled in when the calculator records
+         * file sizes and the folder was listed (not taken from a cache).
+         */
+        public Map<Path, Long> getFileSizes() {
+            return Collections.unmodifiableMap(fileSizes);
+        }
+
+        @Override
+        public String toString() {
+            return path + " - " + getSize() + " byte";
+        }
+    }
+
+    /**
+     * The outcome of one calculation. Complete once {@link #calculate(Path)} has returned.
+     */
+    public static final class Result {
+
+        private final Directory root;
+        private final Map<Path, Directory> directories = new ConcurrentHashMap<>();
+        private final Queue<FileOperationFailure> failures = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger listedCount = new AtomicInteger();
+        private final AtomicInteger reusedCount = new AtomicInteger();
+        private final DirectorySizeCache cache;
+        private final Map<Path, DirectorySizeCache.Entry> scanned;
+        private final boolean recordFileSizes;
+        private final long startedMillis = System.currentTimeMillis();
+
+        private Result(Directory root, DirectorySizeCache cache, Map<Path, DirectorySizeCache.Entry> scanned,
+                       boolean recordFileSizes) {
+            this.root = root;
+            this.cache = cache;
+            this.scanned = scanned;
+            this.recordFileSizes = recordFileSizes;
+            directories.put(root.path, root);
+        }
+
+        public Directory getRoot() {
+            return root;
+        }
+
+        /**
+         * The folder at the given path, as it was resolved against the starting path, or null if it isn't part of
+         * the tree.
+         */
+        public Directory get(Path path) {
+            return directories.get(path);
+        }
+
+        public int getDirectoryCount() {
+            return directories.size();
+        }
+
+        /**
+         * How many folders were listed. Without a cache that is every folder of the tree.
+         */
+        public int getListedCount() {
+            return listedCount.get();
+        }
+
+        /**
+         * How many folders were taken from the cache without listing them.
+         */
+        public int getReusedCount() {
+            return reusedCount.get();
+        }
+
+        public List<FileOperationFailure> getFailures() {
+            return List.copyOf(failures);
+        }
+
+        /**
+         * Visits the tree depth first, each folder before its sub-folders, down to maxDepth (0 is the root only).
+         */
+        public void forEach(int maxDepth, Consumer<Directory> action) {
+            visit(root, maxDepth, action);
+        }
+
+        /**
+         * Prints the folders below the root in the same layout as StatsVisitor: one tab per level, up to printLevel
+         * levels deep.
+         */
+        public void print(int printLevel) {
+            forEach(printLevel, directory -> {
+                if (directory.depth > 0) {
+                    System.out.printf("%s[%s] - %d byte %n", "\t".repeat(directory.depth - 1),
+                            directory.path.getFileName(), directory.getSize());
+                }
+            });
+        }
+
+        private static void visit(Directory directory, int maxDepth, Consumer<Directory> action) {
+            action.accept(directory);
+            if (directory.depth < maxDepth) {
+                for (Directory child : directory.children) {
+                    visit(child, maxDepth, action);
+                }
+            }
+        }
+    }
+
+    private static final class DirectoryTask extends CountedCompleter<Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Directory directory;
+        private final long modifiedMillis;
+        private final Result result;
+        private boolean failed;
+
+        private DirectoryTask(DirectoryTask parent, Directory directory, long modifiedMillis, Result result) {
+            super(parent);
+            this.directory = directory;
+            this.modifiedMillis = modifiedMillis;
+            this.result = result;
+        }
+
+        @Override
+        public void compute() {
+            if (result.cache != null && reuseCached()) {
+                result.reusedCount.incrementAndGet();
+            } else {
+                list();
+                result.listedCount.incrementAndGet();
+            }
+            directory.size.addAndGet(directory.ownSize);
+            directory.fileCount.addAndGet(directory.ownFileCount);
+            tryComplete();
+        }
+
+        private void list() {
+            long size = 0;
+            int files = 0;
+            Map<Path, Long> fileSizes = result.recordFileSizes ? new HashMap<>() : null;
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory.path)) {
+                for (Path entry : entries) {
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        result.failures.add(new FileOperationFailure(entry, e));
+                        failed = true;
+                        continue;
+                    }
+                    if (attrs.isDirectory()) {
+                        fork(entry, attrs.lastModifiedTime().toMillis());
+                    } else {
+                        size += attrs.size();
+                        files++;
+                        if (fileSizes != null) {
+                            fileSizes.put(entry.getFileName(), attrs.size());
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                result.failures.add(new FileOperationFailure(directory.path, e));
+                failed = true;
+            } catch (DirectoryIteratorException e) {
+                // the listing failed half way, the entries read so far are still counted
+                result.failures.add(new FileOperationFailure(directory.path, e.getCause()));
+                failed = true;
+            }
+            directory.ownSize = size;
+            directory.ownFileCount = files;
+            if (fileSizes != null) {
+                directory.fileSizes = fileSizes;
+            }
+        }
+
+        /**
+         * Takes this folder's own sizes from the cache if its modified time hasn't changed and all of its cached
+         * sub-folders are still folders. Nothing is forked unless the whole entry can be used.
+         */
+        private boolean reuseCached() {
+            DirectorySizeCache.Entry cached = result.cache.lookup(directory.path);
+            if (cached == null || cached.modifiedMillis() < 0 || cached.modifiedMillis() != modifiedMillis) {
+                return false;
+            }
+            List<String> names = cached.childDirectories();
+            long[] childModified = new long[names.size()];
+            for (int i = 0; i < childModified.length; i++) {
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(directory.path.resolve(names.get(i)),
+                            BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (!attrs.isDirectory()) {
+                        return false;
+                    }
+                    childModified[i] = attrs.lastModifiedTime().toMillis();
+                } catch (IOException e) {
+                    return false; // gone since the last scan, list the folder again
+                }
+            }
+            for (int i = 0; i < childModified.length; i++) {
+                fork(directory.path.resolve(names.get(i)), childModified[i]);
+            }
+            directory.ownSize = cached.ownSize();
+            directory.ownFileCount = cached.ownFileCount();
+            return true;
+        }
+
+        private void fork(Path path, long childModifiedMillis) {
+            Directory child = new Directory(path, directory);
+            directory.children.add(child);
+            result.directories.put(path, child);
+            addToPendingCount(1);
+            new DirectoryTask(this, child, childModifiedMillis, result).fork();
+        }
+
+        /**
+         * Called once every sub-folder has completed, so this folder's totals are final and can go up one level.
+         */
+        @Override
+        public void onCompletion(CountedCompleter<?> caller) {
+            Directory parent = directory.parent;
+            if (parent != null) {
+                parent.size.addAndGet(directory.size.get());
+                parent.fileCount.addAndGet(directory.fileCount.get());
+                parent.directoryCount.addAndGet(directory.directoryCount.get() + 1);
+            }
+            if (result.scanned != null) {
+                boolean trusted = !failed
+                        && modifiedMillis <= result.startedMillis - DirectorySizeCache.RACY_WINDOW_MILLIS;
+                List<String> children = new ArrayList<>(directory.children.size());
+                for (Directory child : directory.children) {
+                    children.add(child.path.getFileName().toString());
+                }
+                result.scanned.put(directory.path, new DirectorySizeCache.Entry(trusted ? modifiedMillis : -1,
+                        directory.ownSize, directory.ownFileCount, directory.size.get(),
+                        directory.fileCount.get(), directory.directoryCount.get(), List.copyOf(children)));
+            }
+        }
+    }
+}
@@ -8,8 +8,10 @@ package com.skhanra52;
 
 import java.io.IOException;
 import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
 import java.util.stream.Stream;
 
@@ -107,6 +109,25 @@ public class FileListingOneMain {
         }catch (IOException e){
             throw new RuntimeException(e);
         }
+        /*
+         Files.find() hands the BasicFileAttributes of every entry to the BiPredicate, but the stream only returns the
+         paths, so listDir() has to read the attributes again. DirectoryLister keeps the attributes it read during the
+         walk in compact records, optionally with the POSIX permissions and owner, and in parallel mode lists every
+         folder in its own fork-join task.
+         */
+        System.out.println("DirectoryLister with POSIX attributes----------------------------");
+        try {
+            DirectoryLister.Listing listing = new DirectoryLister()
+                    .setPosix(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"))
+                    .setParallel(true)
+                    .walk(path, 2);
+            listing.entries().stream()
+                    .filter(entry -> entry.kind() == DirectoryLister.Kind.FILE)
+                    .forEach(entry -> System.out.println(entry + " " + entry.owner() + " " + entry.permissionSet()));
+            listing.failures().forEach(failure -> System.out.println("Failed: " + failure));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
         //--------------------------------------------------------------------------------------------------------------
          /*
          Directory stream is another Java NIO 2 class. It provides an iterable directories.
@@ -157,9 +178,12 @@ public class FileListingOneMain {
      */
     private static String listDir(Path path){
         try {
-            boolean isDir = Files.isDirectory(path); // checking whether the given name is a file or folder.
-            FileTime dateField = Files.getLastModifiedTime(path);
-            long size = Files.size(path);
+            // One readAttributes() call instead of Files.isDirectory(), getLastModifiedTime() and size(), which
+            // would each read the same attributes from the file system again.
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            boolean isDir = attrs.isDirectory(); // checking whether the given name is a file or folder.
+            FileTime dateField = attrs.lastModifiedTime();
+            long size = attrs.size();
             return "%s %5s %-10s %s".formatted(dateField,size, (isDir ? "<DIR>" : ""), path);
         } catch (IOException e) {
             System.out.println("Whoops! Something went wrong with "+path);
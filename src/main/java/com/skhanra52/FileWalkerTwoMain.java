@@ -109,7 +109,60 @@ public class FileWalkerTwoMain {
             throw new RuntimeException(e);
         }
 
+        /*
+         StatsVisitor walks the tree on a single thread, and only keeps the sizes it is going to print.
+         For big trees (or trees on a network drive) DirectorySizeCalculator lists every folder in its own fork-join
+         task and rolls the sizes up as the sub-folders complete, keeping the cumulative size of every folder.
+         */
+        System.out.println("-Parallel folder sizes--------------------------------------");
+        try {
+            DirectorySizeCalculator.Result sizes = new DirectorySizeCalculator().calculate(startingPath);
+            sizes.print(2);
+            DirectorySizeCalculator.Directory root = sizes.getRoot();
+            System.out.printf("Total: %d byte in %d files and %d folders%n", root.getSize(), root.getFileCount(),
+                    root.getDirectoryCount());
+            sizes.getFailures().forEach(failure -> System.out.println("Failed: " + failure));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        /*
+         With a DirectorySizeCache the sizes are kept between runs, and the next run only lists the folders whose
+         modified time changed. Run this twice and the second run reuses almost every folder.
+         The cache lives outside the tree, otherwise saving it would change the tree it describes.
+         */
+        System.out.println("-Cached folder sizes----------------------------------------");
+        Path cacheFile = Path.of(System.getProperty("java.io.tmpdir"), "javaio-folder-sizes.cache");
+        try {
+            DirectorySizeCache cache = DirectorySizeCache.load(cacheFile);
+            DirectorySizeCalculator.Result sizes = new DirectorySizeCalculator().calculate(startingPath, cache);
+            cache.save();
+            System.out.printf("Total: %d byte, %d folders listed, %d taken from %s%n", sizes.getRoot().getSize(),
+                    sizes.getListedCount(), sizes.getReusedCount(), cacheFile);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
 
+        /*
+         LiveDirectoryStats scans once and then keeps the sizes up to date from WatchService events, so asking for
+         a size never touches the file system. The events arrive a little after the change, hence the sleep.
+         */
+        System.out.println("-Live folder sizes------------------------------------------");
+        Path filesFolder = startingPath.resolve("files");
+        try (LiveDirectoryStats live = new LiveDirectoryStats(filesFolder)) {
+            System.out.println("Before: " + live.get(filesFolder));
+            Path temp = Files.createTempFile(filesFolder, "live", ".txt");
+            Files.writeString(temp, "x".repeat(10_000));
+            Thread.sleep(500);
+            System.out.println("After writing 10000 bytes: " + live.get(filesFolder));
+            Files.delete(temp);
+            Thread.sleep(500);
+            System.out.println("After deleting them: " + live.get(filesFolder));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
 /*
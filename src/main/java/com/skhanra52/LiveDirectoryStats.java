@@ -0,0 +1,453 @@
+package com.skhanra52;
+
+import com.skhanra52.managingFileOper.FileOperationFailure;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Folder sizes of a tree that stay up to date while the tree changes, without walking it again.
+ * <p>
+ * The tree is scanned once with {@link DirectorySizeCalculator} and every folder is registered with a WatchService.
+ * A daemon thread then waits for the events. Every folder keeps the size of each of its files, so an event for a
+ * created, modified or deleted entry only reads the attributes of that entry and the difference in size is added to
+ * the folder and to every parent up to the root. A new sub-folder is scanned and registered, a deleted one is
+ * subtracted and unregistered. The events of one wake up are drained together, so a burst of writes to one file
+ * costs one stat. Only when the WatchService reports OVERFLOW, events of that folder were lost and its subtree is
+ * scanned again; a folder whose watch key became invalid is listed again by its parent.
+ * <p>
+ * The query methods can be called from any thread. The numbers of one folder are updated with atomic adds, a query
+ * that runs during an update may see a parent that already has the new size and a child that doesn't yet.
+ * <p>
+ * Each watched folder uses one inotify watch on Linux, see /proc/sys/fs/inotify/max_user_watches for big trees.
+ * A folder that can't be registered is still counted, but only kept up to date through OVERFLOW rescans of its
+ * parents; it is reported by {@link #getFailures()}.
+ */
+public class LiveDirectoryStats implements Closeable {
+
+    /**
+     * The current cumulative numbers of one folder.
+     */
+    public record Stats(Path path, long size, long fileCount, long directoryCount) {
+    }
+
+    private final DirectorySizeCalculator calculator = new DirectorySizeCalculator().setRecordFileSizes(true);
+    private final WatchService watcher;
+    private final Map<WatchKey, Node> keys = new HashMap<>();
+    private final Map<Path, Node> nodes = new ConcurrentHashMap<>();
+    private final Queue<FileOperationFailure> failures = new ConcurrentLinkedQueue<>();
+    private final AtomicLong eventCount = new AtomicLong();
+    private final AtomicLong overflowCount = new AtomicLong();
+    private final AtomicLong updateCount = new AtomicLong();
+    private final AtomicLong refreshCount = new AtomicLong();
+    private final Thread thread;
+    private volatile Node root;
+    private volatile boolean closed;
+
+    /**
+     * Scans the tree, registers every folder and starts watching.
+     */
+    public LiveDirectoryStats(Path root) throws IOException {
+        Path start = DirectorySizeCache.key(root);
+        watcher = start.getFileSystem().newWatchService();
+        try {
+            this.root = load(start, null);
+        } catch (IOException e) {
+            watcher.close();
+            throw e;
+        }
+        thread = new Thread(this::watch, "live-directory-stats");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public Path getRoot() {
+        return root.path;
+    }
+
+    /**
+     * The current numbers of the folder at the given path, or null if it isn't a folder of the tree.
+     */
+    public Stats get(Path directory) {
+        Node node = nodes.get(DirectorySizeCache.key(directory));
+        return node == null ? null : node.stats();
+    }
+
+    /**
+     * Cumulative size of the folder, or -1 if it isn't a folder of the tree.
+     */
+    public long getSize(Path directory) {
+        Node node = nodes.get(DirectorySizeCache.key(directory));
+        return node == null ? -1 : node.size.get();
+    }
+
+    /**
+     * The current numbers of the sub-folders of the given folder, empty if it isn't a folder of the tree.
+     */
+    public List<Stats> getChildren(Path directory) {
+        Node node = nodes.get(DirectorySizeCache.key(directory));
+        if (node == null) {
+            return List.of();
+        }
+        List<Stats> children = new ArrayList<>();
+        for (Node child : node.children.values()) {
+            children.add(child.stats());
+        }
+        return children;
+    }
+
+    public int getDirectoryCount() {
+        return nodes.size();
+    }
+
+    public long getEventCount() {
+        return eventCount.get();
+    }
+
+    public long getOverflowCount() {
+        return overflowCount.get();
+    }
+
+    /**
+     * How many times the attributes of a single entry were read again because of its events.
+     */
+    public long getUpdateCount() {
+        return updateCount.get();
+    }
+
+    /**
+     * How many times a whole folder was listed again, because its watch key became invalid or it changed while
+     * it was being scanned.
+     */
+    public long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    public List<FileOperationFailure> getFailures() {
+        return List.copyOf(failures);
+    }
+
+    /**
+     * Stops watching. The last numbers can still be queried.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        watcher.close(); // wakes the thread up from take()
+    }
+
+    private void watch() {
+        try {
+            while (!closed) {
+                Map<Node, Set<Path>> changed = new LinkedHashMap<>();
+                Set<Node> dirty = new LinkedHashSet<>();
+                Set<Node> overflowed = new LinkedHashSet<>();
+                WatchKey key = watcher.take();
+                while (key != null) {
+                    collect(key, changed, dirty, overflowed);
+                    key = watcher.poll();
+                }
+                for (Node node : overflowed) {
+                    if (node.watched && !hasAncestor(node, overflowed)) {
+                        rescan(node);
+                    }
+                }
+                for (Node node : dirty) {
+                    if (node.watched) { // not removed by a rescan or by an earlier refresh
+                        refresh(node);
+                    }
+                }
+                for (Map.Entry<Node, Set<Path>> entry : changed.entrySet()) {
+                    Node node = entry.getKey();
+                    if (node.watched && !dirty.contains(node)) { // a refresh already saw the changes
+                        for (Path name : entry.getValue()) {
+                            update(node, name);
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    private void collect(WatchKey key, Map<Node, Set<Path>> changed, Set<Node> dirty, Set<Node> overflowed) {
+        Node node = keys.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            eventCount.incrementAndGet();
+            if (node == null) {
+                continue;
+            }
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflowCount.incrementAndGet();
+                overflowed.add(node);
+            } else {
+                changed.computeIfAbsent(node, n -> new LinkedHashSet<>()).add((Path) event.context());
+            }
+        }
+        if (!key.reset() && node != null && node.parent != null) {
+            // the folder itself is gone, which its parent has been told about as well
+            dirty.add(node.parent);
+        }
+    }
+
+    /**
+     * Reads the attributes of the one entry of the folder an event was about and applies the difference: the new
+     * size of a file, a file that appeared or disappeared, a sub-folder that appeared (loaded) or disappeared
+     * (removed), or an entry that turned from one into the other.
+     */
+    private void update(Node node, Path name) {
+        updateCount.incrementAndGet();
+        Path path = node.path.resolve(name);
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            attrs = null; // deleted
+        } catch (IOException e) {
+            failures.add(new FileOperationFailure(path, e));
+            return;
+        }
+        boolean directory = attrs != null && attrs.isDirectory();
+        Node child = node.children.get(path);
+        if (child != null && !directory) {
+            remove(child);
+        }
+        Long oldSize = node.fileSizes.get(name);
+        if (attrs == null || directory) {
+            if (oldSize != null) {
+                node.fileSizes.remove(name);
+                addToAncestors(node, -oldSize, -1, 0);
+                node.ownSize -= oldSize;
+                node.ownFileCount--;
+            }
+        } else {
+            long delta = attrs.size() - (oldSize == null ? 0 : oldSize);
+            int files = oldSize == null ? 1 : 0;
+            node.fileSizes.put(name, attrs.size());
+            addToAncestors(node, delta, files, 0);
+            node.ownSize += delta;
+            node.ownFileCount += files;
+        }
+        if (directory && child == null) {
+            try {
+                load(path, node);
+            } catch (IOException e) {
+                // deleted again before it could be scanned
+            }
+        }
+    }
+
+    /**
+     * Lists the folder again and applies the difference. Sub-folders that appeared are loaded, the ones that
+     * disappeared are removed.
+     */
+    private void refresh(Node node) {
+        refreshCount.incrementAndGet();
+        long size = 0;
+        int files = 0;
+        Map<Path, Long> fileSizes = new HashMap<>();
+        Set<Path> directories = new HashSet<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(node.path)) {
+            for (Path entry : entries) {
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(entry, BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS);
+                    if (attrs.isDirectory()) {
+                        directories.add(entry);
+                    } else {
+                        size += attrs.size();
+                        files++;
+                        fileSizes.put(entry.getFileName(), attrs.size());
+                    }
+                } catch (NoSuchFileException e) {
+                    // deleted while listing, there is an event for it on the way
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return; // the folder was deleted, its parent removes it
+        } catch (IOException e) {
+            failures.add(new FileOperationFailure(node.path, e));
+            return;
+        } catch (DirectoryIteratorException e) {
+            failures.add(new FileOperationFailure(node.path, e.getCause()));
+            return;
+        }
+
+        addToAncestors(node, size - node.ownSize, files - node.ownFileCount, 0);
+        node.ownSize = size;
+        node.ownFileCount = files;
+        node.fileSizes = fileSizes;
+        for (Node child : List.copyOf(node.children.values())) {
+            if (!directories.remove(child.path)) {
+                remove(child);
+            }
+        }
+        for (Path directory : directories) {
+            try {
+                load(directory, node);
+            } catch (IOException e) {
+                // deleted again before it could be scanned
+            }
+        }
+    }
+
+    /**
+     * Throws away what is known about the subtree and scans it again, after its events overflowed.
+     */
+    private void rescan(Node node) {
+        Node parent = node.parent;
+        remove(node);
+        try {
+            Node replacement = load(node.path, parent);
+            if (parent == null) {
+                root = replacement;
+            }
+        } catch (IOException e) {
+            failures.add(new FileOperationFailure(node.path, e));
+        }
+    }
+
+    /**
+     * Scans a subtree, registers its folders and adds its totals to its parents.
+     * <p>
+     * A folder that changes between the scan and its registration would have no event for that change, so the
+     * folders modified since just before the scan are refreshed once they are registered.
+     */
+    private Node load(Path path, Node parent) throws IOException {
+        long started = System.currentTimeMillis() - DirectorySizeCache.RACY_WINDOW_MILLIS;
+        DirectorySizeCalculator.Result result = calculator.calculate(path);
+        failures.addAll(result.getFailures());
+        List<Node> added = new ArrayList<>();
+        Node node = build(result.getRoot(), parent, added);
+        if (parent != null) {
+            parent.children.put(node.path, node);
+            addToAncestors(parent, node.size.get(), node.fileCount.get(), node.directoryCount.get() + 1);
+        }
+        for (Node directory : added) {
+            try {
+                if (Files.getLastModifiedTime(directory.path, LinkOption.NOFOLLOW_LINKS).toMillis() >= started) {
+                    refresh(directory);
+                }
+            } catch (IOException e) {
+                // deleted already, the event of its parent takes care of it
+            }
+        }
+        return node;
+    }
+
+    private Node build(DirectorySizeCalculator.Directory directory, Node parent, List<Node> added) {
+        Node node = new Node(directory.getPath(), parent);
+        node.ownSize = directory.getOwnSize();
+        node.ownFileCount = directory.getOwnFileCount();
+        node.fileSizes = new HashMap<>(directory.getFileSizes());
+        node.size.set(directory.getSize());
+        node.fileCount.set(directory.getFileCount());
+        node.directoryCount.set(directory.getDirectoryCount());
+        try {
+            node.key = node.path.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            keys.put(node.key, node);
+        } catch (IOException e) {
+            failures.add(new FileOperationFailure(node.path, e));
+        }
+        nodes.put(node.path, node);
+        added.add(node);
+        for (DirectorySizeCalculator.Directory child : directory.getChildren()) {
+            node.children.put(child.getPath(), build(child, node, added));
+        }
+        return node;
+    }
+
+    /**
+     * Unregisters the subtree and subtracts it from its parents.
+     */
+    private void remove(Node node) {
+        if (node.parent != null) {
+            node.parent.children.remove(node.path);
+            addToAncestors(node.parent, -node.size.get(), -node.fileCount.get(), -node.directoryCount.get() - 1);
+        }
+        forget(node);
+    }
+
+    private void forget(Node node) {
+        node.watched = false;
+        nodes.remove(node.path, node);
+        if (node.key != null) {
+            node.key.cancel();
+            keys.remove(node.key);
+        }
+        for (Node child : node.children.values()) {
+            forget(child);
+        }
+    }
+
+    private static void addToAncestors(Node node, long size, long files, long directories) {
+        for (Node n = node; n != null; n = n.parent) {
+            n.size.addAndGet(size);
+            n.fileCount.addAndGet(files);
+            n.directoryCount.addAndGet(directories);
+        }
+    }
+
+    private static boolean hasAncestor(Node node, Set<Node> candidates) {
+        for (Node n = node.parent; n != null; n = n.parent) {
+            if (candidates.contains(n)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * One watched folder. Only the watching thread changes the tree and the file sizes, the counters are read by the
+     * queries.
+     */
+    private static final class Node {
+
+        private final Path path;
+        private final Node parent;
+        private final Map<Path, Node> children = new ConcurrentHashMap<>();
+        private final AtomicLong size = new AtomicLong();
+        private final AtomicLong fileCount = new AtomicLong();
+        private final AtomicLong directoryCount = new AtomicLong();
+        private long ownSize;
+        private int ownFileCount;
+        private Map<Path, Long> fileSizes = new HashMap<>(); // by file name
+        private WatchKey key;
+        private boolean watched = true;
+
+        private Node(Path path, Node parent) {
+            this.path = path;
+            this.parent = parent;
+        }
+
+        private Stats stats() {
+            return new Stats(path, size.get(), fileCount.get(), directoryCount.get());
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.skhanra52.compression;
+
+/**
+ * Layout of the block compressed files written by {@link BlockCompressedWriter} and read by
+ * {@link BlockCompressedReader}. All numbers are big-endian.
+ * <pre>
+ * header   int magic, int version
+ * blocks   raw deflate data, one stream per block, each block decompresses to whole lines
+ * index    per block: long compressedOffset, int compressedLength, int uncompressedLength, int crc32
+ * footer   long indexOffset, int blockCount, int magic
+ * </pre>
+ * The footer is at a fixed distance from the end of the file, so a reader finds the index with two reads and can
+ * then decompress any block on its own, without touching the blocks before it.
+ */
+final class BlockCompressedFormat {
+
+    static final int MAGIC = 0x5A424C4B; // "ZBLK"
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 8;
+    static final int INDEX_ENTRY_SIZE = 20;
+    static final int FOOTER_SIZE = 16;
+
+    private BlockCompressedFormat() {
+    }
+}
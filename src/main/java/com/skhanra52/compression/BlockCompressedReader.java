@@ -0,0 +1,213 @@
+package com.skhanra52.compression;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static com.skhanra52.compression.BlockCompressedFormat.*;
+
+/**
+ * Random access to the blocks of a file written by {@link BlockCompressedWriter}.
+ * <p>
+ * The constructor only reads the footer and the index. {@link #readBlock(int)} then decompresses one block on its
+ * own, so different threads can decompress different blocks at the same time, and {@link #blockAt(long)} finds the
+ * block holding an uncompressed offset for a seek. The reader keeps no file open between calls.
+ */
+public class BlockCompressedReader {
+
+    private final Path path;
+    private final long[] compressedOffsets;
+    private final int[] compressedLengths;
+    private final int[] uncompressedLengths;
+    private final long[] uncompressedOffsets;
+    private final int[] crcs;
+
+    public BlockCompressedReader(Path path) throws IOException {
+        this.path = path;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + FOOTER_SIZE) {
+                throw new IOException(path + " is too short for a block compressed file");
+            }
+            ByteBuffer header = readFully(channel, 0, HEADER_SIZE);
+            ByteBuffer footer = readFully(channel, size - FOOTER_SIZE, FOOTER_SIZE);
+            if (header.getInt(0) != MAGIC || footer.getInt(12) != MAGIC) {
+                throw new IOException(path + " is not a block compressed file");
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported block compressed file version " + header.getInt(4));
+            }
+            long indexOffset = footer.getLong(0);
+            int count = footer.getInt(8);
+            ByteBuffer index = readFully(channel, indexOffset, count * INDEX_ENTRY_SIZE);
+            compressedOffsets = new long[count];
+            compressedLengths = new int[count];
+            uncompressedLengths = new int[count];
+            uncompressedOffsets = new long[count + 1];
+            crcs = new int[count];
+            for (int i = 0; i < count; i++) {
+                compressedOffsets[i] = index.getLong();
+                compressedLengths[i] = index.getInt();
+                uncompressedLengths[i] = index.getInt();
+                crcs[i] = index.getInt();
+                uncompressedOffsets[i + 1] = uncompressedOffsets[i] + uncompressedLengths[i];
+            }
+        }
+    }
+
+    /**
+     * True if the file starts with the magic number of the block format.
+     */
+    public static boolean isBlockCompressed(ByteBuffer firstBytes) {
+        return firstBytes.remaining() >= Integer.BYTES && firstBytes.getInt(firstBytes.position()) == MAGIC;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int getBlockCount() {
+        return compressedOffsets.length;
+    }
+
+    public long getUncompressedSize() {
+        return uncompressedOffsets[compressedOffsets.length];
+    }
+
+    /**
+     * Offset of the block's first byte in the uncompressed data.
+     */
+    public long getBlockOffset(int block) {
+        return uncompressedOffsets[block];
+    }
+
+    public int getUncompressedLength(int block) {
+        return uncompressedLengths[block];
+    }
+
+    long getCompressedOffset(int block) {
+        return compressedOffsets[block];
+    }
+
+    int getCompressedLength(int block) {
+        return compressedLengths[block];
+    }
+
+    int getCrc(int block) {
+        return crcs[block];
+    }
+
+    /**
+     * The block that holds the given offset of the uncompressed data.
+     */
+    public int blockAt(long uncompressedOffset) {
+        if (uncompressedOffset < 0 || uncompressedOffset >= getUncompressedSize()) {
+            throw new IndexOutOfBoundsException("Offset " + uncompressedOffset + ", size " + getUncompressedSize());
+        }
+        int low = 0;
+        int high = compressedOffsets.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (uncompressedOffsets[middle] <= uncompressedOffset) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Decompresses one block and checks its CRC. The buffer is positioned at 0 with the block length as limit.
+     * Safe to call from several threads at once.
+     */
+    public ByteBuffer readBlock(int block) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return readBlock(channel, block);
+        }
+    }
+
+    /**
+     * Sequential channel over the whole uncompressed content, decompressing one block at a time.
+     */
+    public ReadableByteChannel newChannel() throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        return new ReadableByteChannel() {
+            private int next;
+            private ByteBuffer current = ByteBuffer.allocate(0);
+
+            @Override
+            public int read(ByteBuffer target) throws IOException {
+                if (!channel.isOpen()) {
+                    throw new ClosedChannelException();
+                }
+                while (!current.hasRemaining()) {
+                    if (next == compressedOffsets.length) {
+                        return -1;
+                    }
+                    current = readBlock(channel, next++);
+                }
+                int count = Math.min(current.remaining(), target.remaining());
+                target.put(target.position(), current, current.position(), count);
+                target.position(target.position() + count);
+                current.position(current.position() + count);
+                return count;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return channel.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+    }
+
+    private ByteBuffer readBlock(FileChannel channel, int block) throws IOException {
+        ByteBuffer compressed = readFully(channel, compressedOffsets[block], compressedLengths[block]);
+        byte[] content = new byte[uncompressedLengths[block]];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed.array(), 0, compressedLengths[block]);
+            int length = 0;
+            while (length < content.length) {
+                int count = inflater.inflate(content, length, content.length - length);
+                if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new EOFException("Block " + block + " of " + path + " is truncated");
+                }
+                length += count;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Block " + block + " of " + path + " is damaged", e);
+        } finally {
+            inflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        if ((int) crc.getValue() != crcs[block]) {
+            throw new IOException("Block " + block + " of " + path + " fails its CRC check");
+        }
+        return ByteBuffer.wrap(content);
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file at byte " + (position + buffer.position()));
+            }
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,222 @@
+package com.skhanra52.compression;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static com.skhanra52.compression.BlockCompressedFormat.*;
+
+/**
+ * Writes a text file as independently deflated blocks followed by an index of the block offsets, so that the file
+ * can be split and decompressed in parallel, or read from the middle, unlike a GZIP file which has to be
+ * decompressed from the start.
+ * <p>
+ * The bytes written are collected until the block holds at least blockSize bytes, then the block is cut after its
+ * last newline and compressed; the rest of the line moves to the next block. Every block therefore decompresses to
+ * whole lines, which is what the line readers (ChunkedLineSource, FixedWidthReader) need to handle each block on
+ * its own. A line longer than a block makes that block bigger rather than cutting the line.
+ * The layout is described in {@link BlockCompressedFormat}.
+ */
+public class BlockCompressedWriter implements WritableByteChannel {
+
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    private final FileChannel out;
+    private final int blockSize;
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private byte[] block;
+    private int blockLength;
+    private byte[] compressed;
+    private ByteBuffer index = ByteBuffer.allocate(INDEX_ENTRY_SIZE * 64);
+    private int blockCount;
+    private long uncompressedSize;
+    private boolean closed;
+
+    public BlockCompressedWriter(Path path) throws IOException {
+        this(path, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param blockSize uncompressed size of a block. Bigger blocks compress a little better, smaller ones split
+     *                  into more parallel tasks.
+     * @param level     Deflater level, from 1 (fastest) to 9 (smallest).
+     */
+    public BlockCompressedWriter(Path path, int blockSize, int level) throws IOException {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize must be positive, was " + blockSize);
+        }
+        this.blockSize = blockSize;
+        this.block = new byte[blockSize * 2];
+        this.compressed = new byte[blockSize + 1024];
+        this.deflater = new Deflater(level, true);
+        this.out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+        writeFully(header);
+    }
+
+    @Override
+    public int write(ByteBuffer source) throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+        int written = source.remaining();
+        while (source.hasRemaining()) {
+            if (blockLength == block.length) {
+                block = Arrays.copyOf(block, block.length * 2); // a very long line
+            }
+            // fill up to the block size, past it only while the block has no newline to cut at
+            int room = blockLength < blockSize ? blockSize - blockLength : block.length - blockLength;
+            int count = Math.min(source.remaining(), room);
+            source.get(block, blockLength, count);
+            blockLength += count;
+            if (blockLength >= blockSize) {
+                cutBlock();
+            }
+        }
+        return written;
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    public long getUncompressedSize() {
+        return uncompressedSize + blockLength;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    /**
+     * Compresses what is left as the last block (which may end without a newline), then writes the index and the
+     * footer.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try (out) {
+            if (blockLength > 0) {
+                compressBlock(blockLength);
+            }
+            long indexOffset = out.position();
+            writeFully(index.flip());
+            writeFully(ByteBuffer.allocate(FOOTER_SIZE).putLong(indexOffset).putInt(blockCount).putInt(MAGIC).flip());
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Concatenates block compressed files into one, for files written in parallel (one per thread). The blocks are
+     * copied as they are with transferTo(), only the index is rewritten.
+     */
+    public static void concatenate(List<Path> parts, Path target) throws IOException {
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            out.write(ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip());
+            ByteBuffer index = ByteBuffer.allocate(0);
+            int blockCount = 0;
+            for (Path part : parts) {
+                BlockCompressedReader reader = new BlockCompressedReader(part);
+                int count = reader.getBlockCount();
+                if (count == 0) {
+                    continue;
+                }
+                long dataStart = reader.getCompressedOffset(0);
+                long dataEnd = reader.getCompressedOffset(count - 1) + reader.getCompressedLength(count - 1);
+                long shift = out.position() - dataStart;
+                try (FileChannel in = FileChannel.open(part, StandardOpenOption.READ)) {
+                    long position = dataStart;
+                    while (position < dataEnd) {
+                        long copied = in.transferTo(position, dataEnd - position, out);
+                        if (copied == 0 && in.size() <= position) {
+                            throw new IOException(part + " was truncated to " + in.size()
+                                    + " bytes while it was copied");
+                        }
+                        position += copied;
+                    }
+                }
+                ByteBuffer grown = ByteBuffer.allocate(index.position() + count * INDEX_ENTRY_SIZE);
+                index = grown.put(index.flip());
+                for (int i = 0; i < count; i++) {
+                    index.putLong(reader.getCompressedOffset(i) + shift)
+                            .putInt(reader.getCompressedLength(i))
+                            .putInt(reader.getUncompressedLength(i))
+                            .putInt(reader.getCrc(i));
+                }
+                blockCount += count;
+            }
+            long indexOffset = out.position();
+            index.flip();
+            while (index.hasRemaining()) {
+                out.write(index);
+            }
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE).putLong(indexOffset).putInt(blockCount)
+                    .putInt(MAGIC).flip();
+            while (footer.hasRemaining()) {
+                out.write(footer);
+            }
+        }
+    }
+
+    /**
+     * Compresses the block up to its last newline and moves the remainder to the start of the next block.
+     */
+    private void cutBlock() throws IOException {
+        int end = blockLength;
+        while (end > 0 && block[end - 1] != '\n') {
+            end--;
+        }
+        if (end == 0) {
+            return; // no complete line yet, keep collecting
+        }
+        compressBlock(end);
+        System.arraycopy(block, end, block, 0, blockLength - end);
+        blockLength -= end;
+    }
+
+    private void compressBlock(int length) throws IOException {
+        long offset = out.position();
+        deflater.reset();
+        deflater.setInput(block, 0, length);
+        deflater.finish();
+        int compressedLength = 0;
+        while (!deflater.finished()) {
+            if (compressedLength == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+        writeFully(ByteBuffer.wrap(compressed, 0, compressedLength));
+
+        crc.reset();
+        crc.update(block, 0, length);
+        if (index.remaining() < INDEX_ENTRY_SIZE) {
+            index = ByteBuffer.allocate(index.capacity() * 2).put(index.flip());
+        }
+        index.putLong(offset).putInt(compressedLength).putInt(length).putInt((int) crc.getValue());
+        blockCount++;
+        uncompressedSize += length;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+}
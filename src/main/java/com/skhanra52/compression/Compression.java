@@ -0,0 +1,122 @@
+package com.skhanra52.compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * How a file written or read by the writers and readers of this project is compressed.
+ * <ul>
+ *     <li>NONE, plain bytes through a FileChannel.</li>
+ *     <li>GZIP, the standard .gz format, readable by gzip/zcat. It has to be decompressed from the start, so it
+ *     can only be read by one thread.</li>
+ *     <li>BLOCK, independently deflated blocks with an index, see {@link BlockCompressedWriter}. A little bigger
+ *     than GZIP, but it can be split between threads and read from the middle.</li>
+ * </ul>
+ * The writers pick the compression from the file extension with {@link #forPath(Path)}, the readers detect it from
+ * the first bytes of the file with {@link #detect(Path)}, so a renamed file is still read correctly.
+ */
+public enum Compression {
+
+    NONE(""),
+    GZIP(".gz"),
+    BLOCK(".zblk");
+
+    private static final int GZIP_MAGIC = 0x1F8B;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    private final String extension;
+
+    Compression(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * The compression for a file that is going to be written, from its extension.
+     */
+    public static Compression forPath(Path path) {
+        String name = path.getFileName().toString();
+        if (name.endsWith(GZIP.extension)) {
+            return GZIP;
+        }
+        if (name.endsWith(BLOCK.extension)) {
+            return BLOCK;
+        }
+        return NONE;
+    }
+
+    /**
+     * The compression of an existing file, from its first bytes.
+     */
+    public static Compression detect(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer start = ByteBuffer.allocate(Integer.BYTES);
+            while (start.hasRemaining() && channel.read(start) >= 0) {
+                // read up to 4 bytes, a shorter file is plain
+            }
+            start.flip();
+            if (start.remaining() >= 2 && (start.getShort(0) & 0xFFFF) == GZIP_MAGIC) {
+                return GZIP;
+            }
+            return BlockCompressedReader.isBlockCompressed(start) ? BLOCK : NONE;
+        }
+    }
+
+    /**
+     * Opens a channel that decompresses the file, whatever compression it was written with.
+     */
+    public static ReadableByteChannel openReadable(Path path) throws IOException {
+        return detect(path).newReadableChannel(path);
+    }
+
+    /**
+     * Creates (or truncates) the file and returns a channel that compresses what is written to it. The file is
+     * only complete after the channel is closed.
+     */
+    public WritableByteChannel newWritableChannel(Path path) throws IOException {
+        return switch (this) {
+            case NONE -> FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            case GZIP -> {
+                OutputStream out = Files.newOutputStream(path);
+                try {
+                    yield Channels.newChannel(new GZIPOutputStream(out, STREAM_BUFFER_SIZE));
+                } catch (IOException e) {
+                    out.close();
+                    throw e;
+                }
+            }
+            case BLOCK -> new BlockCompressedWriter(path);
+        };
+    }
+
+    public ReadableByteChannel newReadableChannel(Path path) throws IOException {
+        return switch (this) {
+            case NONE -> FileChannel.open(path, StandardOpenOption.READ);
+            case GZIP -> {
+                InputStream in = Files.newInputStream(path);
+                try {
+                    yield Channels.newChannel(new GZIPInputStream(in, STREAM_BUFFER_SIZE));
+                } catch (IOException e) {
+                    in.close();
+                    throw e;
+                }
+            }
+            case BLOCK -> new BlockCompressedReader(path).newChannel();
+        };
+    }
+}
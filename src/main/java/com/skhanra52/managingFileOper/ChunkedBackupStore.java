@@ -0,0 +1,377 @@
+package com.skhanra52.managingFileOper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Deduplicating backup store: instead of a full copy per backup (the student-backup.json example in ManagingFile)
+ * each file is cut into chunks, every chunk is stored once under its SHA-256, and a backup is a manifest listing the
+ * chunks of the file in order.
+ * <p>
+ * The cut points are content defined: a rolling (gear) hash over the bytes picks a boundary wherever its top bits
+ * are all zero, between {@link #MIN_CHUNK_SIZE} and {@link #MAX_CHUNK_SIZE} bytes apart, with one boundary every
+ * {@link #AVERAGE_CHUNK_SIZE} hashed bytes past the minimum on random data. Because the boundaries depend on the
+ * bytes around them and not on their position, inserting or removing a student only changes the chunks around that
+ * student, and the next backup of slowly changing data writes just those chunks.
+ * <pre>
+ * store/chunks/3f/3fa1...e9     chunk content, named by its SHA-256
+ * store/snapshots/name.manifest source, size, time and the "hash length" of each chunk
+ * </pre>
+ * Chunks and manifests are written to a temporary file first and moved into place, so a crashed backup never leaves
+ * a half written chunk under a valid name. Restores stream the chunk files into a channel with transferTo().
+ */
+public class ChunkedBackupStore {
+
+    public static final int MIN_CHUNK_SIZE = 2 * 1024;
+    public static final int AVERAGE_CHUNK_SIZE = 8 * 1024;
+    public static final int MAX_CHUNK_SIZE = 64 * 1024;
+
+    // 13 bits set gives a boundary every 2^13 = 8 KB on average; the top bits depend on the last 64 bytes
+    private static final long BOUNDARY_MASK = 0xFFF8_0000_0000_0000L;
+    private static final long[] GEAR = new long[256];
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9._-]+");
+    private static final String MANIFEST_SUFFIX = ".manifest";
+    private static final HexFormat HEX = HexFormat.of();
+
+    static {
+        // fixed seed, the boundaries (and therefore the deduplication) must be the same on every run
+        SplittableRandom random = new SplittableRandom(0x5354554445_4E5453L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final Path chunks;
+    private final Path snapshots;
+
+    public ChunkedBackupStore(Path directory) throws IOException {
+        chunks = Files.createDirectories(directory.resolve("chunks"));
+        snapshots = Files.createDirectories(directory.resolve("snapshots"));
+    }
+
+    /**
+     * One chunk of a snapshot.
+     */
+    public record Chunk(String hash, int length) {
+    }
+
+    /**
+     * What a manifest records about one backup.
+     */
+    public record Snapshot(String name, Path source, long size, Instant created, List<Chunk> chunks) {
+    }
+
+    /**
+     * A finished backup, with how much of it was new to the store.
+     */
+    public record Backup(Snapshot snapshot, int newChunks, long newBytes) {
+
+        @Override
+        public String toString() {
+            return "%s: %d bytes in %d chunks, %d new chunks (%d bytes) written".formatted(snapshot.name(),
+                    snapshot.size(), snapshot.chunks().size(), newChunks, newBytes);
+        }
+    }
+
+    /**
+     * Backs the file up under a name made of its file name and the current time.
+     */
+    public Backup backup(Path source) throws IOException {
+        String time = Instant.now().toString().replace(":", "").replace("-", "");
+        return backup(source, source.getFileName() + "-" + time);
+    }
+
+    /**
+     * Backs the file up as a new snapshot with the given name (letters, digits, '.', '_' and '-').
+     */
+    public Backup backup(Path source, String name) throws IOException {
+        Path manifest = manifest(name);
+        if (Files.exists(manifest)) {
+            throw new FileAlreadyExistsException(manifest.toString(), null, "snapshot " + name + " already exists");
+        }
+        MessageDigest digest = sha256();
+        List<Chunk> list = new ArrayList<>();
+        int newChunks = 0;
+        long newBytes = 0;
+        long size = 0;
+
+        byte[] buffer = new byte[MAX_CHUNK_SIZE * 2];
+        ByteBuffer window = ByteBuffer.wrap(buffer);
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            int start = 0;
+            int position = 0;
+            int end = 0;
+            long hash = 0;
+            while (true) {
+                if (position == end) {
+                    if (start > 0) { // keep the unfinished chunk, make room behind it
+                        System.arraycopy(buffer, start, buffer, 0, end - start);
+                        position -= start;
+                        end -= start;
+                        start = 0;
+                    }
+                    window.limit(buffer.length).position(end);
+                    int read = in.read(window);
+                    if (read < 0) {
+                        break;
+                    }
+                    end += read;
+                    continue;
+                }
+                hash = (hash << 1) + GEAR[buffer[position++] & 0xFF];
+                int length = position - start;
+                if ((length >= MIN_CHUNK_SIZE && (hash & BOUNDARY_MASK) == 0) || length == MAX_CHUNK_SIZE) {
+                    Chunk chunk = chunk(digest, buffer, start, length);
+                    if (store(chunk, buffer, start)) {
+                        newChunks++;
+                        newBytes += length;
+                    }
+                    list.add(chunk);
+                    size += length;
+                    start = position;
+                    hash = 0;
+                }
+            }
+            if (end > start) {
+                Chunk chunk = chunk(digest, buffer, start, end - start);
+                if (store(chunk, buffer, start)) {
+                    newChunks++;
+                    newBytes += chunk.length();
+                }
+                list.add(chunk);
+                size += chunk.length();
+            }
+        }
+
+        Snapshot snapshot = new Snapshot(name, source.toAbsolutePath(), size, Instant.now(), List.copyOf(list));
+        writeManifest(snapshot, manifest);
+        return new Backup(snapshot, newChunks, newBytes);
+    }
+
+    /**
+     * The names of all snapshots, oldest name first when the default names are used.
+     */
+    public List<String> snapshots() throws IOException {
+        try (Stream<Path> manifests = Files.list(snapshots)) {
+            return manifests.map(path -> path.getFileName().toString())
+                    .filter(file -> file.endsWith(MANIFEST_SUFFIX))
+                    .map(file -> file.substring(0, file.length() - MANIFEST_SUFFIX.length()))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    public Snapshot snapshot(String name) throws IOException {
+        Path source = null;
+        long size = -1;
+        Instant created = null;
+        List<Chunk> list = new ArrayList<>();
+        for (String line : Files.readAllLines(manifest(name))) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            int equals = line.indexOf('=');
+            if (equals > 0) {
+                String value = line.substring(equals + 1);
+                switch (line.substring(0, equals)) {
+                    case "source" -> source = Path.of(value);
+                    case "size" -> size = Long.parseLong(value);
+                    case "created" -> created = Instant.parse(value);
+                    default -> {
+                        // written by a newer version, not needed to restore
+                    }
+                }
+            } else {
+                int space = line.indexOf(' ');
+                list.add(new Chunk(line.substring(0, space), Integer.parseInt(line.substring(space + 1))));
+            }
+        }
+        return new Snapshot(name, source, size, created, List.copyOf(list));
+    }
+
+    /**
+     * Streams the snapshot's chunks into the channel, in order, and returns the number of bytes written.
+     * The channel is not closed.
+     */
+    public long restore(String name, WritableByteChannel target) throws IOException {
+        long written = 0;
+        for (Chunk chunk : snapshot(name).chunks()) {
+            try (FileChannel in = FileChannel.open(chunkPath(chunk.hash()), StandardOpenOption.READ)) {
+                if (in.size() != chunk.length()) {
+                    throw new IOException("Chunk " + chunk.hash() + " is " + in.size() + " bytes, expected "
+                            + chunk.length());
+                }
+                long position = 0;
+                while (position < chunk.length()) {
+                    long copied = in.transferTo(position, chunk.length() - position, target);
+                    if (copied == 0 && in.size() <= position) {
+                        throw new IOException("Chunk " + chunk.hash() + " was truncated to " + in.size()
+                                + " bytes while it was restored");
+                    }
+                    position += copied;
+                }
+            }
+            written += chunk.length();
+        }
+        return written;
+    }
+
+    /**
+     * Restores the snapshot into the file at target, replacing it.
+     */
+    public long restore(String name, Path target) throws IOException {
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            return restore(name, out);
+        }
+    }
+
+    /**
+     * Reads every chunk of the snapshot and checks it against its hash. Returns the chunks that are missing or
+     * damaged, an empty list means the snapshot can be restored.
+     */
+    public List<Chunk> verify(String name) throws IOException {
+        MessageDigest digest = sha256();
+        List<Chunk> damaged = new ArrayList<>();
+        for (Chunk chunk : snapshot(name).chunks()) {
+            try {
+                byte[] content = Files.readAllBytes(chunkPath(chunk.hash()));
+                if (content.length != chunk.length() || !chunk(digest, content, 0, content.length).equals(chunk)) {
+                    damaged.add(chunk);
+                }
+            } catch (NoSuchFileException e) {
+                damaged.add(chunk);
+            }
+        }
+        return damaged;
+    }
+
+    /**
+     * Deletes the snapshot's manifest. Its chunks stay until {@link #collectGarbage()}, other snapshots may use them.
+     */
+    public boolean delete(String name) throws IOException {
+        return Files.deleteIfExists(manifest(name));
+    }
+
+    /**
+     * Deletes the chunks no snapshot refers to any more, and returns how many were deleted.
+     * Don't run it while a backup is being written, that backup's new chunks aren't referenced yet.
+     */
+    public int collectGarbage() throws IOException {
+        Set<String> referenced = new HashSet<>();
+        for (String name : snapshots()) {
+            for (Chunk chunk : snapshot(name).chunks()) {
+                referenced.add(chunk.hash());
+            }
+        }
+        int deleted = 0;
+        try (DirectoryStream<Path> fanOut = Files.newDirectoryStream(chunks)) {
+            for (Path directory : fanOut) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                    for (Path file : files) {
+                        if (!referenced.contains(file.getFileName().toString()) && Files.deleteIfExists(file)) {
+                            deleted++;
+                        }
+                    }
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Writes the chunk unless the store already has it. Returns true if it was new.
+     */
+    private boolean store(Chunk chunk, byte[] buffer, int offset) throws IOException {
+        Path path = chunkPath(chunk.hash());
+        if (Files.exists(path)) {
+            return false;
+        }
+        Path directory = Files.createDirectories(path.getParent());
+        Path temp = Files.createTempFile(directory, chunk.hash(), ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer content = ByteBuffer.wrap(buffer, offset, chunk.length());
+                while (content.hasRemaining()) {
+                    out.write(content);
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            return false; // another backup stored the same chunk in the meantime
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return true;
+    }
+
+    private void writeManifest(Snapshot snapshot, Path manifest) throws IOException {
+        Path temp = Files.createTempFile(snapshots, snapshot.name(), ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp)) {
+                writer.write("# chunked backup manifest, one \"sha256 length\" line per chunk");
+                writer.newLine();
+                writer.write("source=" + snapshot.source());
+                writer.newLine();
+                writer.write("size=" + snapshot.size());
+                writer.newLine();
+                writer.write("created=" + snapshot.created());
+                writer.newLine();
+                for (Chunk chunk : snapshot.chunks()) {
+                    writer.write(chunk.hash());
+                    writer.write(' ');
+                    writer.write(Integer.toString(chunk.length()));
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, manifest, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private Path manifest(String name) {
+        if (!NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid snapshot name: " + name);
+        }
+        return snapshots.resolve(name + MANIFEST_SUFFIX);
+    }
+
+    private Path chunkPath(String hash) {
+        return chunks.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static Chunk chunk(MessageDigest digest, byte[] buffer, int offset, int length) {
+        digest.update(buffer, offset, length);
+        return new Chunk(HEX.formatHex(digest.digest()), length);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required on every Java platform", e);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.skhanra52.managingFileOper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * A path that a copy, sync, delete, listing or scan couldn't handle, and why. The operations collect these and carry
+ * on with the rest of the tree instead of stopping at the first problem.
+ */
+public record FileOperationFailure(Path path, IOException exception) {
+
+    @Override
+    public String toString() {
+        return path + ": " + exception;
+    }
+}
@@ -5,9 +5,8 @@ import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Instant;
-import java.time.LocalDateTime;
 import java.util.Comparator;
-import java.util.stream.Collectors;
+import java.util.List;
 import java.util.stream.Stream;
 
 public class ManagingFile {
@@ -129,6 +128,43 @@ public class ManagingFile {
 //            System.out.println("Directory has been copied to" + resourcesDir);
 //        } catch (IOException e) {
 //            throw new RuntimeException(e);
+//        }
+
+        /*
+         resourceCopy() does one Files.copy() after the other on the calling thread. For big trees TreeCopier copies
+         with a pool of worker threads (folders are always created before their content), uses transferTo() for the
+         large files and reports its progress while it runs.
+         */
+//        try{
+//            TreeCopier.Result result = new TreeCopier(8).copy(fileDir, resourcesDir, System.out::println);
+//            result.failures().forEach(failure -> System.out.println("Failed: " + failure));
+//        } catch (IOException e) {
+//            throw new RuntimeException(e);
+//        }
+
+        /*
+         The resources folder is a mirror of files, and both copies above copy every file again each time.
+         In sync mode TreeCopier only copies the files whose size or last modified time differ, and prune deletes
+         what has been removed from files since, so re-syncing an unchanged mirror only reads the metadata.
+         */
+//        try{
+//            TreeCopier.Result result = new TreeCopier().setSync(true).setPrune(true).copy(fileDir, resourcesDir);
+//            System.out.println(result.totals());
+//        } catch (IOException e) {
+//            throw new RuntimeException(e);
+//        }
+
+        /*
+         recurseDelete() and directoryDeleteWalk() delete one path at a time, and directoryDeleteWalk() sorts the
+         whole walk in memory first. TreeDeleter deletes sibling folders at the same time and removes each folder as
+         soon as its last child is gone. What couldn't be deleted is reported instead of stopping the delete.
+         */
+//        try{
+//            TreeDeleter.Result result = new TreeDeleter(8).delete(resourcesDir);
+//            System.out.println(result);
+//            result.failures().forEach(failure -> System.out.println("Failed: " + failure));
+//        } catch (IOException e) {
+//            throw new RuntimeException(e);
 //        }
 
         /*
@@ -149,6 +185,51 @@ public class ManagingFile {
 //            reader.transferTo(writer);
 //        }catch (IOException e){
 //            throw new RuntimeException(e);
+//        }
+
+        /*
+         Every run of the backup above writes another full copy. ChunkedBackupStore cuts the file into chunks at
+         content defined boundaries and stores each chunk once, under its SHA-256, so a second backup of slowly
+         changing student data only writes the few chunks around the students that changed.
+         */
+//        try{
+//            ChunkedBackupStore store = new ChunkedBackupStore(Path.of("backups"));
+//            ChunkedBackupStore.Backup backup = store.backup(Path.of("files/Data/students-activity.json"));
+//            System.out.println(backup);
+//            store.restore(backup.snapshot().name(), Path.of("student-backup.json"));
+//        }catch (IOException e){
+//            throw new RuntimeException(e);
+//        }
+
+        /*
+         Reading the backup back as Student objects. StudentJsonReader pulls one student at a time out of the JSON
+         array, so it does not matter how big the backup is.
+         */
+//        try(StudentJsonReader reader = new StudentJsonReader(Path.of("student-backup.json"))){
+//            Student student;
+//            while((student = reader.next()) != null){
+//                System.out.println(student.getStudentId() + " " + student.getCountry());
+//            }
+//        }catch (IOException e){
+//            throw new RuntimeException(e);
+//        }
+
+        /*
+         The JSON backup compresses very well, the member names repeat in every student. Compression.GZIP wraps the
+         target in a GZIPOutputStream channel, and StudentJsonReader detects the compression from the first bytes,
+         so the compressed backup is read back exactly like the plain one. Compression.BLOCK (".zblk") is a little
+         bigger but can be decompressed block by block by several threads, see BlockCompressedWriter.
+         */
+//        try(FileChannel in = FileChannel.open(Path.of("files/Data/students-activity.json"));
+//            WritableByteChannel out = Compression.GZIP.newWritableChannel(Path.of("student-backup.json.gz"))){
+//            in.transferTo(0, in.size(), out);
+//        }catch (IOException e){
+//            throw new RuntimeException(e);
+//        }
+//        try(StudentJsonReader reader = new StudentJsonReader(Path.of("student-backup.json.gz"))){
+//            System.out.println("First student of the compressed backup: " + reader.next());
+//        }catch (IOException e){
+//            throw new RuntimeException(e);
 //        }
 
         /*
@@ -220,6 +301,16 @@ public class ManagingFile {
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+
+        /*
+         TreeIndexGenerator walks the tree only once and writes the index files in parallel. In incremental mode
+         only the folders whose subtree changed since the last run get a new index.
+         */
+//        try{
+//            System.out.println(new TreeIndexGenerator().setIncremental(true).generate(iconsDir.getName(0)));
+//        } catch (IOException e) {
+//            throw new RuntimeException(e);
+//        }
         // Creating backup of each index file.
         for (int i= 1; i <= iconsDir.getNameCount(); i++){
             Path indexPath = iconsDir.subpath(0, i).resolve("index.txt");
@@ -336,36 +427,23 @@ public class ManagingFile {
         }
     }
 
+    /**
+     * Writes an index.txt into startingPath and every folder below it, listing everything under that folder.
+     * This used to run Files.find() again for every sub-folder, see {@link TreeIndexGenerator} for the single walk.
+     * @param startingPath the top folder of the tree to index.
+     * @throws IOException if the tree can't be walked or an index file couldn't be written. The exception of the
+     * first failure is the cause, the ones of the others are suppressed.
+     */
     public static void generateIndexFile(Path startingPath) throws IOException{
-        Path indexFile = startingPath.resolve("index.txt");
-        try(Stream<Path> contents = Files.find(startingPath, Integer.MAX_VALUE,
-                (path, attr) -> true )) {
-
-            String fileContents = contents
-                    .map(path -> path.toAbsolutePath().toString())
-                    .collect(Collectors.joining(
-                            System.lineSeparator(),
-                            "Directory Contents: " + System.lineSeparator(),
-                            System.lineSeparator() + "Generated: " + LocalDateTime.now()
-                    ));
-            Files.writeString(indexFile, fileContents,
-                    StandardOpenOption.CREATE,
-                    StandardOpenOption.APPEND);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-
-        // generating index.txt recursively
-        try (Stream<Path> contents = Files.list(startingPath)) {
-            contents.filter(Files::isDirectory)
-                    .toList()
-                    .forEach(dir -> {
-                        try{
-                            generateIndexFile(dir);
-                        } catch (IOException e) {
-                            throw new RuntimeException(e);
-                        }
-                    } );
+        TreeIndexGenerator.Result result = new TreeIndexGenerator().generate(startingPath);
+        if (!result.isComplete()) {
+            List<FileOperationFailure> failures = result.failures();
+            IOException e = new IOException("Indexing " + startingPath + " failed " + failures.size()
+                    + " times, first " + failures.get(0), failures.get(0).exception());
+            for (FileOperationFailure failure : failures.subList(1, failures.size())) {
+                e.addSuppressed(failure.exception());
+            }
+            throw e;
         }
     }
 }
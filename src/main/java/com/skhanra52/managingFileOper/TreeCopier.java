@@ -0,0 +1,439 @@
+package com.skhanra52.managingFileOper;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Parallel version of {@link ManagingFile#resourceCopy(Path, Path)}: copies a directory tree with a fixed number of
+ * worker threads.
+ * <p>
+ * Copying many small files is bound by the latency of the metadata operations (create, stat, set times), not by the
+ * bytes, so the work is spread over the workers: each directory is one task that creates the target folder, lists
+ * the source folder and then submits its files in batches and its sub-folders as new tasks. A folder's children are
+ * only submitted after the folder itself has been created, so the directories always exist before their content.
+ * Files of {@link #TRANSFER_THRESHOLD} bytes or more are copied with FileChannel.transferTo(), which lets the
+ * operating system move the data without copying it through the Java heap; smaller files use Files.copy().
+ * <p>
+ * Like resourceCopy() existing files are replaced. Every file keeps the attributes Files.copy() with COPY_ATTRIBUTES
+ * gives it, its times and, where the file system has them, its POSIX permissions, whichever way it is copied.
+ * Symbolic links are copied as links. A file or folder that fails is recorded and the copy carries on.
+ * <p>
+ * In sync mode ({@link #setSync(boolean)}) a file is only copied when the target is missing or differs: a target
+ * with the same size and last modified time as the source is left alone, so syncing an unchanged mirror only reads
+ * metadata. When the size is the same but the time isn't, {@link #setVerifyContent(boolean)} compares the two files
+ * with Files.mismatch() and only fixes the time if the content turns out to be the same. With
+ * {@link #setPrune(boolean)} whatever is in the target but no longer in the source is deleted.
+ */
+public class TreeCopier {
+
+    public static final long TRANSFER_THRESHOLD = 1024 * 1024;
+
+    private static final int FILES_PER_TASK = 64;
+    private static final long TRANSFER_CHUNK = 8 * 1024 * 1024;
+
+    private final int concurrency;
+    private Duration progressInterval = Duration.ofSeconds(1);
+    private boolean sync;
+    private boolean verifyContent;
+    private boolean prune;
+    private Duration modifyWindow = Duration.ZERO;
+
+    /**
+     * Two workers per core, copying spends most of its time waiting for the file system.
+     */
+    public TreeCopier() {
+        this(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    /**
+     * @param concurrency the number of worker threads, which is also the most file operations running at once.
+     */
+    public TreeCopier(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1, was " + concurrency);
+        }
+        this.concurrency = concurrency;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * How often the progress listener of {@link #copy(Path, Path, Consumer)} is called, 1 second by default.
+     */
+    public TreeCopier setProgressInterval(Duration progressInterval) {
+        this.progressInterval = progressInterval;
+        return this;
+    }
+
+    /**
+     * Only copy the files whose target is missing or has a different size or last modified time.
+     */
+    public TreeCopier setSync(boolean sync) {
+        this.sync = sync;
+        return this;
+    }
+
+    /**
+     * In sync mode, compare the content of files that have the same size but a different time, instead of copying
+     * them straight away. Worth it when the data is expensive to write (a network drive) and the times are known to
+     * be unreliable, since the comparison reads both files.
+     */
+    public TreeCopier setVerifyContent(boolean verifyContent) {
+        this.verifyContent = verifyContent;
+        return this;
+    }
+
+    /**
+     * How far apart the last modified times of source and target may be and still count as the same in sync mode.
+     * Times are compared in microseconds, the precision Files.copy() keeps, so the default of zero works for the
+     * usual Linux, macOS and Windows file systems. FAT only keeps 2 seconds, a window of 2 seconds is needed there.
+     */
+    public TreeCopier setModifyWindow(Duration modifyWindow) {
+        this.modifyWindow = modifyWindow;
+        return this;
+    }
+
+    /**
+     * Delete the files and folders of the target that aren't in the source (any more).
+     */
+    public TreeCopier setPrune(boolean prune) {
+        this.prune = prune;
+        return this;
+    }
+
+    public Result copy(Path source, Path target) throws IOException {
+        return copy(source, target, progress -> {
+        });
+    }
+
+    /**
+     * Copies source (a directory or a single file) to target, and blocks until everything has been copied.
+     *
+     * @param progress called on the calling thread with the counts so far, every progress interval while the copy
+     *                 runs and once more at the end.
+     */
+    public Result copy(Path source, Path target, Consumer<Progress> progress) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(source, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        if (attrs.isDirectory() && target.toAbsolutePath().normalize().startsWith(source.toAbsolutePath().normalize())) {
+            throw new IOException("Can't copy " + source + " into itself (" + target + ")");
+        }
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "tree-copier-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Run run = new Run(workers, sync, verifyContent, prune, modifyWindow.toNanos() / 1000);
+            if (attrs.isDirectory()) {
+                run.submit(() -> run.copyDirectory(source, target));
+            } else {
+                run.submit(() -> run.copyFile(source, target, attrs));
+            }
+            while (!run.done.await(progressInterval.toMillis(), TimeUnit.MILLISECONDS)) {
+                progress.accept(run.progress());
+            }
+            if (!run.prunedFolders.isEmpty()) {
+                TreeDeleter.Result deleted = new TreeDeleter(concurrency).deleteAll(run.prunedFolders);
+                run.pruned.addAndGet(deleted.files() + deleted.directories());
+                run.failures.addAll(deleted.failures());
+            }
+            Progress totals = run.progress();
+            progress.accept(totals);
+            return new Result(totals, List.copyOf(run.failures));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Copy of " + source + " interrupted");
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * The counts of a copy so far. files and bytes are what has been copied, skipped the files a sync left alone
+     * because they were unchanged, and pruned the files and folders it deleted from the target.
+     */
+    public record Progress(long directories, long files, long bytes, long skipped, long pruned, int failures,
+                           Duration elapsed) {
+
+        public double bytesPerSecond() {
+            return elapsed.isZero() ? 0 : bytes * 1e9 / elapsed.toNanos();
+        }
+
+        public double filesPerSecond() {
+            return elapsed.isZero() ? 0 : files * 1e9 / elapsed.toNanos();
+        }
+
+        @Override
+        public String toString() {
+            return ("%d folders, %d files, %d bytes in %d ms (%.0f files/s, %.1f MB/s), %d unchanged, %d pruned, "
+                    + "%d failed").formatted(directories, files, bytes, elapsed.toMillis(), filesPerSecond(),
+                    bytesPerSecond() / 1e6, skipped, pruned, failures);
+        }
+    }
+
+    /**
+     * The totals of a finished copy and everything that failed.
+     */
+    public record Result(Progress totals, List<FileOperationFailure> failures) {
+    }
+
+    /**
+     * The state of one copy, shared by its tasks.
+     */
+    private static final class Run {
+
+        private final ExecutorService workers;
+        private final long startNanos = System.nanoTime();
+        private final AtomicLong pending = new AtomicLong();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final AtomicLong directories = new AtomicLong();
+        private final AtomicLong files = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong pruned = new AtomicLong();
+        private final Queue<FileOperationFailure> failures = new ConcurrentLinkedQueue<>();
+        private final Queue<Path> prunedFolders = new ConcurrentLinkedQueue<>();
+        private final boolean sync;
+        private final boolean verifyContent;
+        private final boolean prune;
+        private final long modifyWindowMicros;
+
+        private Run(ExecutorService workers, boolean sync, boolean verifyContent, boolean prune,
+                    long modifyWindowMicros) {
+            this.workers = workers;
+            this.sync = sync;
+            this.verifyContent = verifyContent;
+            this.prune = prune;
+            this.modifyWindowMicros = modifyWindowMicros;
+        }
+
+        /**
+         * Runs the task on a worker. The copy is done when the last submitted task has finished, and because a task
+         * submits its children before it finishes, that can only happen once the whole tree has been copied.
+         */
+        private void submit(Runnable task) {
+            pending.incrementAndGet();
+            workers.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    if (pending.decrementAndGet() == 0) {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+
+        private void copyDirectory(Path source, Path target) {
+            try {
+                Files.createDirectories(target);
+            } catch (IOException e) {
+                failures.add(new FileOperationFailure(target, e));
+                return; // nowhere to put the children
+            }
+            directories.incrementAndGet();
+
+            List<Entry> batch = new ArrayList<>(FILES_PER_TASK);
+            Set<String> names = prune ? new HashSet<>() : null;
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(source)) {
+                for (Path entry : entries) {
+                    if (names != null) {
+                        names.add(entry.getFileName().toString());
+                    }
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        failures.add(new FileOperationFailure(entry, e));
+                        continue;
+                    }
+                    Path destination = target.resolve(entry.getFileName().toString());
+                    if (attrs.isDirectory()) {
+                        submit(() -> copyDirectory(entry, destination));
+                    } else {
+                        batch.add(new Entry(entry, destination, attrs));
+                        if (batch.size() == FILES_PER_TASK) {
+                            submitFiles(batch);
+                            batch = new ArrayList<>(FILES_PER_TASK);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                failures.add(new FileOperationFailure(source, e));
+                names = null; // incomplete, pruning could delete what is still in the source
+            } catch (DirectoryIteratorException e) {
+                failures.add(new FileOperationFailure(source, e.getCause()));
+                names = null;
+            }
+            if (!batch.isEmpty()) {
+                submitFiles(batch);
+            }
+            if (names != null) {
+                prune(target, names);
+            }
+        }
+
+        /**
+         * Deletes the files in target that aren't in the source. Folders are collected and deleted with a
+         * TreeDeleter once the copy is done, so their content isn't raced by other tasks.
+         */
+        private void prune(Path target, Set<String> sourceNames) {
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(target)) {
+                for (Path entry : entries) {
+                    if (sourceNames.contains(entry.getFileName().toString())) {
+                        continue;
+                    }
+                    try {
+                        if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                            prunedFolders.add(entry);
+                        } else if (Files.deleteIfExists(entry)) {
+                            pruned.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        failures.add(new FileOperationFailure(entry, e));
+                    }
+                }
+            } catch (IOException e) {
+                failures.add(new FileOperationFailure(target, e));
+            } catch (DirectoryIteratorException e) {
+                failures.add(new FileOperationFailure(target, e.getCause()));
+            }
+        }
+
+        private void submitFiles(List<Entry> batch) {
+            submit(() -> {
+                for (Entry entry : batch) {
+                    copyFile(entry.source, entry.target, entry.attrs);
+                }
+            });
+        }
+
+        private void copyFile(Path source, Path target, BasicFileAttributes attrs) {
+            try {
+                if (sync && unchanged(source, target, attrs)) {
+                    skipped.incrementAndGet();
+                    return;
+                }
+                if (attrs.isRegularFile() && attrs.size() >= TRANSFER_THRESHOLD) {
+                    transfer(source, target, attrs);
+                } else if (attrs.isRegularFile()) {
+                    Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.COPY_ATTRIBUTES);
+                    bytes.addAndGet(attrs.size());
+                } else {
+                    Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING, LinkOption.NOFOLLOW_LINKS);
+                }
+                files.incrementAndGet();
+            } catch (IOException e) {
+                failures.add(new FileOperationFailure(source, e));
+            }
+        }
+
+        /**
+         * True when the target is a regular file with the same size and time as the source, or with the same size
+         * and content if verifyContent is on (its time is corrected then, so the next sync doesn't compare again).
+         * A symbolic link is unchanged when it points to the same place.
+         */
+        private boolean unchanged(Path source, Path target, BasicFileAttributes attrs) throws IOException {
+            if (attrs.isSymbolicLink()) {
+                return Files.isSymbolicLink(target)
+                        && Files.readSymbolicLink(target).equals(Files.readSymbolicLink(source));
+            }
+            if (!attrs.isRegularFile()) {
+                return false;
+            }
+            BasicFileAttributes existing;
+            try {
+                existing = Files.readAttributes(target, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (NoSuchFileException e) {
+                return false;
+            }
+            if (!existing.isRegularFile() || existing.size() != attrs.size()) {
+                return false;
+            }
+            long difference = existing.lastModifiedTime().to(TimeUnit.MICROSECONDS)
+                    - attrs.lastModifiedTime().to(TimeUnit.MICROSECONDS);
+            if (Math.abs(difference) <= modifyWindowMicros) {
+                return true;
+            }
+            if (verifyContent && Files.mismatch(source, target) == -1) {
+                Files.setLastModifiedTime(target, attrs.lastModifiedTime());
+                return true;
+            }
+            return false;
+        }
+
+        private void transfer(Path source, Path target, BasicFileAttributes attrs) throws IOException {
+            if (Files.isDirectory(target, LinkOption.NOFOLLOW_LINKS)) {
+                throw new FileAlreadyExistsException(target.toString(), null, "a directory is in the way");
+            }
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                         StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                long size = in.size();
+                long position = 0;
+                while (position < size) {
+                    long copied = in.transferTo(position, Math.min(TRANSFER_CHUNK, size - position), out);
+                    if (copied == 0 && in.size() <= position) {
+                        throw new IOException(source + " was truncated to " + in.size()
+                                + " bytes while it was copied");
+                    }
+                    position += copied;
+                    bytes.addAndGet(copied);
+                }
+            }
+            copyAttributes(source, target, attrs);
+        }
+
+        /**
+         * What COPY_ATTRIBUTES copies for the small files: the POSIX permissions, when the target supports them, and
+         * the times.
+         */
+        private static void copyAttributes(Path source, Path target, BasicFileAttributes attrs) throws IOException {
+            if (Files.getFileAttributeView(target, PosixFileAttributeView.class) != null) {
+                Files.setPosixFilePermissions(target, Files.getPosixFilePermissions(source, LinkOption.NOFOLLOW_LINKS));
+            }
+            Files.getFileAttributeView(target, BasicFileAttributeView.class)
+                    .setTimes(attrs.lastModifiedTime(), attrs.lastAccessTime(), attrs.creationTime());
+        }
+
+        private Progress progress() {
+            return new Progress(directories.get(), files.get(), bytes.get(), skipped.get(), pruned.get(),
+                    failures.size(),
+                    Duration.ofNanos(System.nanoTime() - startNanos));
+        }
+    }
+
+    private record Entry(Path source, Path target, BasicFileAttributes attrs) {
+    }
+}
@@ -0,0 +1,273 @@
+package com.skhanra52.managingFileOper;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parallel, streaming version of {@link ManagingFile#recurseDelete(Path)} and
+ * {@link ManagingFile#directoryDeleteWalk(Path)}.
+ * <p>
+ * directoryDeleteWalk() has to collect the whole walk and sort it in reverse to delete children before their parent.
+ * Here every folder has a countdown instead: one for its own listing plus one per sub-folder and per batch of files
+ * it hands out. Sub-folders and file batches are deleted by the worker threads at the same time, and whichever task
+ * brings a folder's countdown to zero deletes the folder and counts down its parent. Nothing but the folders that
+ * are still being worked on is kept in memory, and no folder waits for an unrelated part of the tree.
+ * <p>
+ * A file or folder that can't be deleted is recorded and the rest of the tree is still deleted. Its parent folders
+ * are left in place, since they can't be empty. Symbolic links are deleted, not followed.
+ */
+public class TreeDeleter {
+
+    private static final int FILES_PER_TASK = 64;
+
+    private final int concurrency;
+
+    public TreeDeleter() {
+        this(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    /**
+     * @param concurrency the number of worker threads deleting at the same time.
+     */
+    public TreeDeleter(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1, was " + concurrency);
+        }
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Deletes target and, if it's a directory, everything in it. Blocks until done. A target that doesn't exist is
+     * not an error, like Files.deleteIfExists().
+     */
+    public Result delete(Path target) throws IOException {
+        return deleteAll(List.of(target));
+    }
+
+    /**
+     * Deletes all the targets, sharing one pool of workers. Failures are collected like the failures inside the
+     * trees, so one missing permission doesn't keep the other targets from being deleted.
+     */
+    public Result deleteAll(Collection<Path> targets) throws IOException {
+        long startNanos = System.nanoTime();
+        List<FileOperationFailure> failures = new ArrayList<>();
+        List<Path> folders = new ArrayList<>();
+        long files = 0;
+        for (Path target : targets) {
+            try {
+                if (Files.readAttributes(target, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isDirectory()) {
+                    folders.add(target);
+                } else if (Files.deleteIfExists(target)) {
+                    files++;
+                }
+            } catch (NoSuchFileException e) {
+                // nothing to delete
+            } catch (IOException e) {
+                failures.add(new FileOperationFailure(target, e));
+            }
+        }
+        if (folders.isEmpty()) {
+            return new Result(files, 0, List.copyOf(failures), Duration.ofNanos(System.nanoTime() - startNanos));
+        }
+
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "tree-deleter-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Run run = new Run(workers, folders.size());
+            for (Path folder : folders) {
+                Folder root = new Folder(folder, null);
+                workers.execute(() -> run.deleteFolder(root));
+            }
+            run.done.await();
+            failures.addAll(run.failures);
+            return new Result(files + run.files.get(), run.directories.get(), List.copyOf(failures),
+                    Duration.ofNanos(System.nanoTime() - startNanos));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Delete of " + folders + " interrupted");
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * What a delete removed, and what it couldn't.
+     */
+    public record Result(long files, long directories, List<FileOperationFailure> failures, Duration elapsed) {
+
+        public boolean isComplete() {
+            return failures.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "%d files and %d folders deleted in %d ms, %d failed".formatted(files, directories,
+                    elapsed.toMillis(), failures.size());
+        }
+    }
+
+    /**
+     * A folder that is being emptied. pending counts its listing and its outstanding sub-folders and file batches.
+     */
+    private static final class Folder {
+
+        private final Path path;
+        private final Folder parent;
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private volatile boolean failed;
+
+        private Folder(Path path, Folder parent) {
+            this.path = path;
+            this.parent = parent;
+        }
+    }
+
+    private static final class Run {
+
+        private final ExecutorService workers;
+        private final CountDownLatch done;
+        private final AtomicLong files = new AtomicLong();
+        private final AtomicLong directories = new AtomicLong();
+        private final Queue<FileOperationFailure> failures = new ConcurrentLinkedQueue<>();
+
+        private Run(ExecutorService workers, int roots) {
+            this.workers = workers;
+            this.done = new CountDownLatch(roots);
+        }
+
+        /**
+         * Lists the folder and hands its sub-folders and file batches to the workers. The folder's own part of
+         * pending is counted down whatever happens, otherwise the delete would never finish.
+         */
+        private void deleteFolder(Folder folder) {
+            boolean listed = false;
+            try {
+                listed = list(folder);
+            } catch (RuntimeException e) {
+                failures.add(new FileOperationFailure(folder.path, new IOException(e)));
+            } finally {
+                countDown(folder, listed);
+            }
+        }
+
+        private boolean list(Folder folder) {
+            boolean listed = true;
+            List<Path> batch = new ArrayList<>(FILES_PER_TASK);
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(folder.path)) {
+                for (Path entry : entries) {
+                    boolean directory;
+                    try {
+                        directory = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS)
+                                .isDirectory();
+                    } catch (NoSuchFileException e) {
+                        continue; // already gone
+                    } catch (IOException e) {
+                        failures.add(new FileOperationFailure(entry, e));
+                        listed = false;
+                        continue;
+                    }
+                    if (directory) {
+                        Folder child = new Folder(entry, folder);
+                        folder.pending.incrementAndGet();
+                        workers.execute(() -> deleteFolder(child));
+                    } else {
+                        batch.add(entry);
+                        if (batch.size() == FILES_PER_TASK) {
+                            submitFiles(batch, folder);
+                            batch = new ArrayList<>(FILES_PER_TASK);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                failures.add(new FileOperationFailure(folder.path, e));
+                listed = false;
+            } catch (DirectoryIteratorException e) {
+                failures.add(new FileOperationFailure(folder.path, e.getCause()));
+                listed = false;
+            }
+            if (!batch.isEmpty()) {
+                submitFiles(batch, folder);
+            }
+            return listed;
+        }
+
+        private void submitFiles(List<Path> batch, Folder folder) {
+            folder.pending.incrementAndGet();
+            workers.execute(() -> {
+                boolean deleted = true;
+                try {
+                    for (Path file : batch) {
+                        try {
+                            if (Files.deleteIfExists(file)) {
+                                files.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            failures.add(new FileOperationFailure(file, e));
+                            deleted = false;
+                        } catch (RuntimeException e) {
+                            failures.add(new FileOperationFailure(file, new IOException(e)));
+                            deleted = false;
+                        }
+                    }
+                } finally {
+                    countDown(folder, deleted); // also after an Error
+                }
+            });
+        }
+
+        /**
+         * One part of the folder is finished. When it was the last one the folder is empty (unless something
+         * failed) and is deleted, which in turn finishes one part of its parent.
+         */
+        private void countDown(Folder folder, boolean succeeded) {
+            while (folder != null) {
+                if (!succeeded) {
+                    folder.failed = true;
+                }
+                if (folder.pending.decrementAndGet() > 0) {
+                    return;
+                }
+                succeeded = !folder.failed;
+                if (succeeded) {
+                    try {
+                        if (Files.deleteIfExists(folder.path)) {
+                            directories.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        failures.add(new FileOperationFailure(folder.path, e));
+                        succeeded = false;
+                    } catch (RuntimeException e) {
+                        failures.add(new FileOperationFailure(folder.path, new IOException(e)));
+                        succeeded = false;
+                    }
+                }
+                if (folder.parent == null) {
+                    done.countDown();
+                }
+                folder = folder.parent;
+            }
+        }
+    }
+}
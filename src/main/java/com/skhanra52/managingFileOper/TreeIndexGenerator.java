@@ -0,0 +1,263 @@
+package com.skhanra52.managingFileOper;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single pass replacement of {@link ManagingFile#generateIndexFile(Path)}: writes an index.txt into every folder of
+ * a tree, listing everything below that folder.
+ * <p>
+ * generateIndexFile() runs Files.find() over a folder's subtree and then calls itself for every sub-folder, which
+ * runs Files.find() over the same files again, so a file at depth d is listed d + 1 times. Here the tree is walked
+ * once, into an in-memory tree of names, and every index is streamed from that tree by a pool of worker threads, one
+ * task per folder. The walk is the only part that touches the directories; the rest is writing.
+ * <p>
+ * The content is the one generateIndexFile() writes, the absolute paths of the folder and of everything below it,
+ * depth first, between a "Directory Contents:" line and a "Generated:" time, with two differences: the entries of a
+ * folder are sorted by name, and every folder lists its own index.txt even before it exists, so the same tree always
+ * gives the same index. The index is rewritten instead of appended to.
+ * <p>
+ * In incremental mode ({@link #setIncremental(boolean)}) the index of a folder is only rewritten when a folder of its
+ * subtree was modified after the index was written. Creating, deleting or renaming an entry changes the modified
+ * time of its folder, which is exactly what changes the listing. Every index gets the time the walk started (minus
+ * the timestamp precision of coarse file systems) as its modified time, so a change made while the indexes were being
+ * written is still seen by the next run. Files that only changed content don't change any index.
+ */
+public class TreeIndexGenerator {
+
+    public static final String INDEX_FILE_NAME = "index.txt";
+
+    // FAT keeps modified times in 2 second steps
+    private static final long TIMESTAMP_PRECISION_MILLIS = 2000;
+    private static final String HEADER = "Directory Contents: ";
+
+    private final int concurrency;
+    private boolean incremental;
+
+    public TreeIndexGenerator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param concurrency the number of worker threads writing index files at the same time.
+     */
+    public TreeIndexGenerator(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1, was " + concurrency);
+        }
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Only rewrite the index of folders whose subtree changed since the index was written.
+     */
+    public TreeIndexGenerator setIncremental(boolean incremental) {
+        this.incremental = incremental;
+        return this;
+    }
+
+    /**
+     * Walks the tree once and writes the index of every folder. Blocks until all indexes are written.
+     */
+    public Result generate(Path root) throws IOException {
+        long startNanos = System.nanoTime();
+        FileTime indexTime = FileTime.fromMillis(System.currentTimeMillis() - TIMESTAMP_PRECISION_MILLIS);
+        Queue<FileOperationFailure> failures = new ConcurrentLinkedQueue<>();
+        List<Folder> folders = walk(root.toAbsolutePath().normalize(), failures);
+
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "tree-index-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger written = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(folders.size());
+        String generated = LocalDateTime.now().toString();
+        try {
+            // the walk lists parents first, so the biggest indexes are started first
+            for (Folder folder : folders) {
+                workers.execute(() -> {
+                    try {
+                        if (!incremental || !isCurrent(folder)) {
+                            write(folder, generated, indexTime);
+                            written.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        failures.add(new FileOperationFailure(folder.path.resolve(INDEX_FILE_NAME), e));
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Index generation of " + root + " interrupted");
+        } finally {
+            workers.shutdownNow();
+        }
+        return new Result(folders.size(), written.get(), folders.size() - written.get(), List.copyOf(failures),
+                Duration.ofNanos(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * How many indexes were written and how many were still current.
+     */
+    public record Result(int directories, int written, int skipped, List<FileOperationFailure> failures,
+                         Duration elapsed) {
+
+        public boolean isComplete() {
+            return failures.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "%d folders indexed in %d ms, %d written, %d unchanged, %d failed".formatted(directories,
+                    elapsed.toMillis(), written, skipped, failures.size());
+        }
+    }
+
+    /**
+     * Builds the tree of names with one walk. The folders are returned in the order they were visited.
+     */
+    private static List<Folder> walk(Path root, Queue<FileOperationFailure> failures) throws IOException {
+        List<Folder> folders = new ArrayList<>();
+        Deque<Folder> open = new ArrayDeque<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                Folder folder = new Folder(dir, attrs.lastModifiedTime().toMillis());
+                Folder parent = open.peek();
+                if (parent != null) {
+                    parent.entries.add(new Entry(dir.getFileName().toString(), folder));
+                }
+                open.push(folder);
+                folders.add(folder);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                Folder folder = open.peek();
+                String name = file.getFileName().toString();
+                if (folder == null) {
+                    return FileVisitResult.CONTINUE; // the root is a file, there is nothing to index
+                }
+                if (name.equals(INDEX_FILE_NAME)) {
+                    folder.indexModified = attrs.lastModifiedTime().toMillis(); // listed anyway, see postVisit
+                } else {
+                    folder.entries.add(new Entry(name, null));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                failures.add(new FileOperationFailure(file, exc));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                if (exc != null) {
+                    failures.add(new FileOperationFailure(dir, exc));
+                }
+                Folder folder = open.pop();
+                folder.entries.add(new Entry(INDEX_FILE_NAME, null));
+                folder.entries.sort(Comparator.comparing(Entry::name));
+                Folder parent = open.peek();
+                if (parent != null) {
+                    parent.subtreeModified = Math.max(parent.subtreeModified, folder.subtreeModified);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return folders;
+    }
+
+    /**
+     * The index is current when it is newer than every folder of the subtree and still starts with the folder's
+     * path (a tree that was moved keeps its modified times, but its absolute paths change).
+     */
+    private static boolean isCurrent(Folder folder) throws IOException {
+        if (folder.indexModified <= folder.subtreeModified) {
+            return false;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(folder.path.resolve(INDEX_FILE_NAME))) {
+            return HEADER.equals(reader.readLine()) && folder.path.toString().equals(reader.readLine());
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private static void write(Folder folder, String generated, FileTime indexTime) throws IOException {
+        Path index = folder.path.resolve(INDEX_FILE_NAME);
+        try (BufferedWriter writer = Files.newBufferedWriter(index, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writer.write(HEADER);
+            writer.newLine();
+            writer.write(folder.path.toString());
+            writeEntries(writer, folder.path.toString(), folder);
+            writer.newLine();
+            writer.write("Generated: " + generated);
+        }
+        Files.setLastModifiedTime(index, indexTime);
+    }
+
+    private static void writeEntries(BufferedWriter writer, String folderPath, Folder folder) throws IOException {
+        String separator = folder.path.getFileSystem().getSeparator();
+        String prefix = folderPath.endsWith(separator) ? folderPath : folderPath + separator; // a root like "/"
+        for (Entry entry : folder.entries) {
+            String path = prefix + entry.name;
+            writer.newLine();
+            writer.write(path);
+            if (entry.folder != null) {
+                writeEntries(writer, path, entry.folder);
+            }
+        }
+    }
+
+    private record Entry(String name, Folder folder) {
+    }
+
+    /**
+     * A folder of the walked tree. The entries are only changed by the walk, before the writers start.
+     */
+    private static final class Folder {
+
+        private final Path path;
+        private final List<Entry> entries = new ArrayList<>();
+        private long subtreeModified;
+        private long indexModified = -1;
+
+        private Folder(Path path, long modified) {
+            this.path = path;
+            this.subtreeModified = modified;
+        }
+    }
+}
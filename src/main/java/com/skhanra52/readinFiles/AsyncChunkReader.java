@@ -0,0 +1,344 @@
+package com.skhanra52.readinFiles;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Reads a file with several reads in flight while the blocks already read are parsed on worker threads.
+ * <p>
+ * The readers of this package read a block and then parse it on the same thread, so the disk is idle while the CPU
+ * parses and the other way around, and a single blocking read never keeps more than one request in the device
+ * queue. Here the file is read through an {@link AsynchronousFileChannel}, with up to readAhead positional reads of
+ * blockSize bytes outstanding at the same time, each one into a direct buffer of a fixed ring of buffers. The calling
+ * thread takes the blocks in file order as they complete, cuts them after their last newline (the rest of the line
+ * is put in front of the next block) and hands them to a pool of parser threads. A buffer goes back to the ring,
+ * and the next read is issued into it, as soon as its block is parsed, so a slow parser holds the reads back instead
+ * of letting read blocks pile up in memory.
+ * <p>
+ * The chunks are {@link ChunkedLineSource.Chunk}s, newline aligned like the ones of ChunkedLineSource, and the
+ * results of {@link #read(Path, Function)} are returned in file order. The buffer of a chunk goes back to the ring
+ * once the parser returns, so the parser must not keep the buffer or views of it. The file is read as it is,
+ * compressed files have to go through ChunkedLineSource.
+ */
+public class AsyncChunkReader {
+
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+    public static final int DEFAULT_READ_AHEAD = 4;
+
+    // room in front of every block for the end of the line the previous block stopped in
+    private static final int CARRY_ROOM = 16 * 1024;
+
+    private final int parsers;
+    private int blockSize = DEFAULT_BLOCK_SIZE;
+    private int readAhead = DEFAULT_READ_AHEAD;
+
+    /**
+     * One parser thread per core.
+     */
+    public AsyncChunkReader() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parsers the number of threads parsing blocks at the same time.
+     */
+    public AsyncChunkReader(int parsers) {
+        if (parsers < 1) {
+            throw new IllegalArgumentException("parsers must be at least 1, was " + parsers);
+        }
+        this.parsers = parsers;
+    }
+
+    /**
+     * The number of bytes read by one read.
+     */
+    public AsyncChunkReader setBlockSize(int blockSize) {
+        if (blockSize < 1 || blockSize > Integer.MAX_VALUE - CARRY_ROOM) {
+            throw new IllegalArgumentException("Invalid blockSize " + blockSize);
+        }
+        this.blockSize = blockSize;
+        return this;
+    }
+
+    /**
+     * The number of reads in flight at the same time. The ring has readAhead + parsers buffers, so every parser
+     * can hold one while the reads go on.
+     */
+    public AsyncChunkReader setReadAhead(int readAhead) {
+        if (readAhead < 1) {
+            throw new IllegalArgumentException("readAhead must be at least 1, was " + readAhead);
+        }
+        this.readAhead = readAhead;
+        return this;
+    }
+
+    /**
+     * Passes every chunk of the file to the consumer, on the parser threads. Blocks until all chunks are parsed.
+     */
+    public void forEach(Path file, Consumer<? super ChunkedLineSource.Chunk> parser) throws IOException {
+        read(file, chunk -> {
+            parser.accept(chunk);
+            return null;
+        });
+    }
+
+    /**
+     * Parses every chunk of the file on the parser threads and returns the results in file order. Blocks until all
+     * chunks are parsed. An exception thrown by the parser stops the reading and is rethrown here, an
+     * UncheckedIOException as its IOException.
+     */
+    public <R> List<R> read(Path file, Function<? super ChunkedLineSource.Chunk, ? extends R> parser)
+            throws IOException {
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(parsers, runnable -> {
+            Thread thread = new Thread(runnable, "async-parser-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(file, StandardOpenOption.READ)) {
+            Pipeline pipeline = new Pipeline(channel, channel.size());
+            List<Future<R>> results = pipeline.run(workers, parser);
+            List<R> parsed = new ArrayList<>(results.size());
+            for (Future<R> result : results) {
+                parsed.add(result.get());
+            }
+            return parsed;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Reading " + file + " interrupted");
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private static IOException rethrow(Throwable failure) {
+        if (failure instanceof IOException e) {
+            return e;
+        }
+        if (failure instanceof UncheckedIOException e) {
+            return e.getCause();
+        }
+        if (failure instanceof RuntimeException e) {
+            throw e;
+        }
+        if (failure instanceof Error e) {
+            throw e;
+        }
+        return new IOException(failure);
+    }
+
+    /**
+     * The state of one read(): the free buffers of the ring, the reads in flight and the blocks read but not yet
+     * taken by the calling thread. All of it is guarded by the pipeline's monitor, the completion handlers run on
+     * the channel's threads.
+     */
+    private final class Pipeline {
+
+        private final AsynchronousFileChannel channel;
+        private final long size;
+        private final int blockCount;
+        private final Deque<ByteBuffer> free = new ArrayDeque<>();
+        private final Map<Integer, ByteBuffer> completed = new HashMap<>();
+        private int nextBlock;
+        private int inFlight;
+        private Throwable failure;
+
+        private Pipeline(AsynchronousFileChannel channel, long size) {
+            this.channel = channel;
+            this.size = size;
+            long blocks = (size + blockSize - 1) / blockSize;
+            if (blocks > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("File of " + size + " bytes has too many blocks of " + blockSize);
+            }
+            this.blockCount = (int) blocks;
+            for (int i = 0; i < readAhead + parsers; i++) {
+                free.add(ByteBuffer.allocateDirect(CARRY_ROOM + blockSize));
+            }
+        }
+
+        /**
+         * Takes the blocks in order and submits one parse task per chunk. The end of the last line of a block is
+         * copied out before the block is submitted, since its buffer is reused once the block is parsed.
+         */
+        private <R> List<Future<R>> run(ExecutorService workers,
+                                        Function<? super ChunkedLineSource.Chunk, ? extends R> parser)
+                throws IOException, InterruptedException {
+            List<Future<R>> results = new ArrayList<>();
+            byte[] carry = new byte[CARRY_ROOM];
+            int carryLength = 0;
+            fill();
+            for (int block = 0; block < blockCount; block++) {
+                ByteBuffer buffer = take(block);
+                int end = buffer.position();
+                int chunkEnd = end;
+                if (block < blockCount - 1) {
+                    while (chunkEnd > CARRY_ROOM && buffer.get(chunkEnd - 1) != '\n') {
+                        chunkEnd--;
+                    }
+                }
+                if (chunkEnd == CARRY_ROOM) { // no newline, the whole block belongs to the next chunk
+                    carry = append(carry, carryLength, buffer, CARRY_ROOM, end);
+                    carryLength += end - CARRY_ROOM;
+                    release(buffer);
+                    continue;
+                }
+
+                long offset = (long) block * blockSize - carryLength;
+                ByteBuffer chunk;
+                boolean inBuffer = carryLength <= CARRY_ROOM;
+                if (inBuffer) {
+                    int start = CARRY_ROOM - carryLength;
+                    buffer.put(start, carry, 0, carryLength);
+                    chunk = buffer.slice(start, chunkEnd - start);
+                } else {
+                    chunk = ByteBuffer.allocate(carryLength + chunkEnd - CARRY_ROOM);
+                    chunk.put(carry, 0, carryLength).put(buffer.slice(CARRY_ROOM, chunkEnd - CARRY_ROOM)).flip();
+                }
+                carry = append(carry, 0, buffer, chunkEnd, end);
+                carryLength = end - chunkEnd;
+                if (!inBuffer) {
+                    release(buffer);
+                }
+                results.add(submit(workers, parser, new ChunkedLineSource.Chunk(offset, chunk),
+                        inBuffer ? buffer : null));
+            }
+            if (carryLength > 0) { // the file got shorter while it was read
+                ByteBuffer chunk = ByteBuffer.wrap(Arrays.copyOf(carry, carryLength));
+                results.add(submit(workers, parser, new ChunkedLineSource.Chunk(size - carryLength, chunk), null));
+            }
+            return results;
+        }
+
+        /**
+         * Parses the chunk on a worker, then gives its pooled buffer (if it is in one) back to the ring.
+         */
+        private <R> Future<R> submit(ExecutorService workers,
+                                     Function<? super ChunkedLineSource.Chunk, ? extends R> parser,
+                                     ChunkedLineSource.Chunk chunk, ByteBuffer pooled) {
+            return workers.submit(() -> {
+                try {
+                    return parser.apply(chunk);
+                } catch (RuntimeException | Error e) {
+                    fail(e);
+                    throw e;
+                } finally {
+                    if (pooled != null) {
+                        release(pooled);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Copies the bytes from..to of the buffer to the array at the given length, growing the array if needed.
+         */
+        private static byte[] append(byte[] array, int length, ByteBuffer buffer, int from, int to) {
+            byte[] target = array;
+            if (length + to - from > array.length) {
+                target = Arrays.copyOf(array, Math.max(array.length * 2, length + to - from));
+            }
+            buffer.get(from, target, length, to - from);
+            return target;
+        }
+
+        private synchronized ByteBuffer take(int block) throws IOException, InterruptedException {
+            ByteBuffer buffer;
+            while ((buffer = completed.remove(block)) == null && failure == null) {
+                wait();
+            }
+            if (failure != null) {
+                throw rethrow(failure);
+            }
+            return buffer;
+        }
+
+        private synchronized void release(ByteBuffer buffer) {
+            free.push(buffer);
+            fill();
+        }
+
+        private synchronized void fail(Throwable e) {
+            if (failure == null) {
+                failure = e;
+            }
+            notifyAll();
+        }
+
+        /**
+         * Issues reads into free buffers while fewer than readAhead are in flight.
+         */
+        private synchronized void fill() {
+            while (failure == null && inFlight < readAhead && nextBlock < blockCount && !free.isEmpty()) {
+                ByteBuffer buffer = free.pop();
+                long position = (long) nextBlock * blockSize;
+                buffer.clear().position(CARRY_ROOM).limit(CARRY_ROOM + (int) Math.min(blockSize, size - position));
+                inFlight++;
+                new Read(nextBlock++, buffer, position).next();
+            }
+        }
+
+        private synchronized void complete(int block, ByteBuffer buffer) {
+            completed.put(block, buffer);
+            inFlight--;
+            notifyAll();
+            fill();
+        }
+
+        /**
+         * The reads of one block. A positional read may return fewer bytes than asked for, then the rest is read
+         * by the next one. A file that got shorter since it was opened ends the block early.
+         */
+        private final class Read implements CompletionHandler<Integer, Void> {
+
+            private final int block;
+            private final ByteBuffer buffer;
+            private final long blockPosition;
+
+            private Read(int block, ByteBuffer buffer, long blockPosition) {
+                this.block = block;
+                this.buffer = buffer;
+                this.blockPosition = blockPosition;
+            }
+
+            private void next() {
+                channel.read(buffer, blockPosition + buffer.position() - CARRY_ROOM, null, this);
+            }
+
+            @Override
+            public void completed(Integer read, Void attachment) {
+                if (read >= 0 && buffer.hasRemaining()) {
+                    next();
+                } else {
+                    complete(block, buffer);
+                }
+            }
+
+            @Override
+            public void failed(Throwable exc, Void attachment) {
+                fail(exc);
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.skhanra52.readinFiles;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * CharSequence view over a range of single byte characters (ASCII / ISO-8859-1) in a ByteBuffer.
+ * Nothing is decoded or copied until toString() is called, and the view can be pointed at another range with
+ * {@link #set(ByteBuffer, int, int)}, so one instance can be reused for every line or column of a file.
+ */
+final class ByteCharSequence implements CharSequence, Comparable<CharSequence> {
+
+    private ByteBuffer buffer;
+    private int offset;
+    private int length;
+
+    ByteCharSequence() {
+    }
+
+    ByteCharSequence(ByteBuffer buffer, int offset, int length) {
+        set(buffer, offset, length);
+    }
+
+    ByteCharSequence set(ByteBuffer buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    /**
+     * Narrows the view to its content without leading and trailing spaces, the same as String.trim() does.
+     */
+    ByteCharSequence trim() {
+        while (length > 0 && (buffer.get(offset) & 0xFF) <= ' ') {
+            offset++;
+            length--;
+        }
+        while (length > 0 && (buffer.get(offset + length - 1) & 0xFF) <= ' ') {
+            length--;
+        }
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return (char) (buffer.get(offset + index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+        }
+        return new ByteCharSequence(buffer, offset + start, end - start);
+    }
+
+    /**
+     * Compares the characters with the given text without creating a String.
+     */
+    boolean contentEquals(CharSequence text) {
+        if (text.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if ((buffer.get(offset + i) & 0xFF) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int compareTo(CharSequence other) {
+        return CharSequence.compare(this, other);
+    }
+
+    @Override
+    public String toString() {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
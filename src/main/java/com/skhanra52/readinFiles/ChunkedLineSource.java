@@ -0,0 +1,279 @@
+package com.skhanra52.readinFiles;
+
+import com.skhanra52.compression.BlockCompressedReader;
+import com.skhanra52.compression.Compression;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Splittable line source for large files.
+ * <p>
+ * Files.lines() already splits a UTF-8, US-ASCII or ISO-8859-1 file between the threads of a parallel stream, but for
+ * any other charset its lines come out of one sequential reader, it can't read compressed files, and it creates a
+ * String for every line. This class memory maps the file and cuts it into byte ranges (chunks) of roughly chunkSize
+ * bytes, each one moved forward to end just after a newline. Finding the boundaries only looks at a few bytes around
+ * each cut, so the list of chunks is ready before any line is read. The parallel stream then splits that list between
+ * the fork-join workers, and each worker reads the lines of its own chunks.
+ * <p>
+ * Lines are CharSequence views over the mapped bytes, decoded as single byte characters (ASCII / ISO-8859-1), with
+ * the line terminator ("\n" or "\r\n") removed. Call toString() on the lines that have to be kept. Use
+ * {@link #lines(Charset)} for files that aren't single byte text.
+ * <p>
+ * Compressed files (see {@link Compression}) can't be mapped, their chunks are decompressed into heap buffers:
+ * <ul>
+ *     <li>BLOCK files have one chunk per compressed block, since every block ends after a newline. The blocks are
+ *     decompressed by the parallel stream workers, each worker the blocks of its own chunks.</li>
+ *     <li>GZIP files can only be decompressed from the start, so {@link #chunks()} reads them sequentially, one
+ *     newline aligned chunk of about chunkSize bytes at a time. Close the stream if it isn't read to the end.</li>
+ * </ul>
+ * Chunk offsets are always offsets in the uncompressed content.
+ */
+public class ChunkedLineSource {
+
+    /**
+     * A newline aligned byte range of the file. The buffer is positioned at 0 and its limit is the chunk length.
+     */
+    public record Chunk(long offset, ByteBuffer buffer) {
+    }
+
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private static final long MAX_WINDOW = 1L << 30;
+
+    private final Path path;
+    private final int chunkSize;
+    private final Compression compression;
+    private final List<Chunk> chunks; // mapped chunks of an uncompressed file
+    private final BlockCompressedReader blocks;
+
+    public ChunkedLineSource(Path path) throws IOException {
+        this(path, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ChunkedLineSource(Path path, int chunkSize) throws IOException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive, was " + chunkSize);
+        }
+        this.path = path;
+        this.chunkSize = chunkSize;
+        this.compression = Compression.detect(path);
+        this.chunks = compression == Compression.NONE ? split(path, chunkSize) : null;
+        this.blocks = compression == Compression.BLOCK ? new BlockCompressedReader(path) : null;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    /**
+     * All chunks of the file. For a compressed file this decompresses the whole file into memory, prefer
+     * {@link #chunks()} for those.
+     */
+    public List<Chunk> getChunks() {
+        if (chunks != null) {
+            return chunks;
+        }
+        try (Stream<Chunk> stream = chunks()) {
+            return stream.toList();
+        }
+    }
+
+    /**
+     * Ordered stream of the chunks, parallel unless the file is GZIP compressed.
+     * A chunk that can't be decompressed throws an UncheckedIOException.
+     */
+    public Stream<Chunk> chunks() {
+        return switch (compression) {
+            case NONE -> chunks.parallelStream();
+            case BLOCK -> IntStream.range(0, blocks.getBlockCount()).parallel().mapToObj(this::decompressBlock);
+            case GZIP -> {
+                StreamedChunks streamed = new StreamedChunks();
+                yield StreamSupport.stream(streamed, false).onClose(streamed::close);
+            }
+        };
+    }
+
+    /**
+     * Ordered stream of all lines of the file, parallel like {@link #chunks()}. Use sequential() on it to read on
+     * the calling thread.
+     */
+    public Stream<CharSequence> lines() {
+        return chunks().flatMap(chunk -> {
+            List<CharSequence> lines = new ArrayList<>();
+            forEachLine(chunk.buffer(), lines::add);
+            return lines.stream();
+        });
+    }
+
+    /**
+     * Ordered stream of all lines of the file decoded with the charset, parallel like {@link #chunks()}. Every
+     * chunk gets its own {@link TextDecoder}: ASCII lines are views over the bytes, only the other lines are
+     * decoded into Strings. The chunks are cut at 0x0A bytes, so the charset must encode "\n" as that single byte
+     * ({@link TextDecoder#splitsLines(Charset)}), which rules out UTF-16 and UTF-32.
+     *
+     * @throws IllegalArgumentException for a charset whose lines can't be split at 0x0A bytes.
+     */
+    public Stream<CharSequence> lines(Charset charset) {
+        if (!TextDecoder.splitsLines(charset)) {
+            throw new IllegalArgumentException("Lines of " + charset + " can't be split at 0x0A bytes");
+        }
+        return chunks().flatMap(chunk -> new TextDecoder(charset).lines(chunk.buffer()).stream());
+    }
+
+    /**
+     * Calls the action for every line of the chunk, in order. Each line is a new view, so it can be kept.
+     */
+    public static void forEachLine(ByteBuffer chunk, Consumer<? super CharSequence> action) {
+        int limit = chunk.limit();
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && chunk.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int contentEnd = lineEnd;
+            if (contentEnd > lineStart && chunk.get(contentEnd - 1) == '\r') {
+                contentEnd--;
+            }
+            action.accept(new ByteCharSequence(chunk, lineStart, contentEnd - lineStart));
+            lineStart = lineEnd + 1;
+        }
+    }
+
+    private Chunk decompressBlock(int block) {
+        try {
+            return new Chunk(blocks.getBlockOffset(block), blocks.readBlock(block));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<Chunk> split(Path path, int chunkSize) throws IOException {
+        List<Chunk> result = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long windowStart = 0;
+            while (windowStart < size) {
+                // Mappings are limited to 2 GB, so big files are mapped in windows which end after a newline
+                long windowLength = Math.min(MAX_WINDOW, size - windowStart);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+                int limit = (int) windowLength;
+                if (windowStart + windowLength < size) {
+                    int lastNewline = limit - 1;
+                    while (lastNewline >= 0 && window.get(lastNewline) != '\n') {
+                        lastNewline--;
+                    }
+                    if (lastNewline < 0) {
+                        throw new IOException("Line at byte " + windowStart + " of " + path + " is longer than "
+                                + MAX_WINDOW + " bytes");
+                    }
+                    limit = lastNewline + 1;
+                }
+
+                int chunkStart = 0;
+                while (chunkStart < limit) {
+                    int chunkEnd = (int) Math.min((long) chunkStart + chunkSize, limit);
+                    while (chunkEnd < limit && window.get(chunkEnd - 1) != '\n') {
+                        chunkEnd++;
+                    }
+                    result.add(new Chunk(windowStart + chunkStart, window.slice(chunkStart, chunkEnd - chunkStart)));
+                    chunkStart = chunkEnd;
+                }
+                windowStart += limit;
+            }
+        }
+        return List.copyOf(result);
+    }
+
+    /**
+     * Cuts the decompressed content of a GZIP file into newline aligned chunks while it is read. The buffer is
+     * filled from the channel, everything up to its last newline becomes a chunk and the rest of the line is
+     * moved to the start of the buffer for the next chunk.
+     */
+    private final class StreamedChunks extends Spliterators.AbstractSpliterator<Chunk> {
+
+        private ReadableByteChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+        private long offset;
+        private boolean endOfFile;
+
+        private StreamedChunks() {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Chunk> action) {
+            try {
+                if (channel == null) {
+                    if (endOfFile) {
+                        return false;
+                    }
+                    channel = compression.newReadableChannel(path);
+                }
+                int end;
+                while (true) {
+                    while (buffer.hasRemaining() && !endOfFile) {
+                        if (channel.read(buffer) < 0) {
+                            endOfFile = true;
+                        }
+                    }
+                    end = buffer.position();
+                    while (!endOfFile && end > 0 && buffer.get(end - 1) != '\n') {
+                        end--;
+                    }
+                    if (end > 0 || endOfFile) {
+                        break;
+                    }
+                    // a line longer than the buffer
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+                }
+                if (end == 0) {
+                    close();
+                    return false;
+                }
+                byte[] content = new byte[end];
+                buffer.get(0, content);
+                action.accept(new Chunk(offset, ByteBuffer.wrap(content)));
+                offset += end;
+                buffer.flip().position(end);
+                buffer.compact();
+                return true;
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void close() {
+            endOfFile = true;
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // only read from
+                }
+                channel = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.skhanra52.readinFiles;
+
+import com.skhanra52.compression.Compression;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Reads fixed-width files, like files/fixedWidth.txt, without a regex and without a String per line.
+ * <p>
+ * The file is memory mapped and every line is handed to the caller as a {@link Row}, a flyweight which slices the
+ * columns straight out of the mapped bytes by their offset. The same Row instance is reused for every line, so
+ * a caller that only looks at numbers or compares text allocates nothing while the file is scanned. Files larger
+ * than one mapping are read through consecutive windows which always start at the beginning of a line.
+ * <p>
+ * Columns are single byte characters (ASCII / ISO-8859-1), which is what a fixed-width layout counted in bytes means.
+ * <p>
+ * A compressed file (see {@link Compression}) is decompressed chunk by chunk through {@link ChunkedLineSource}
+ * instead of being mapped; the rows work the same, over the heap buffer of the current chunk.
+ */
+public class FixedWidthReader {
+
+    public enum Type {
+        TEXT, INT, LONG
+    }
+
+    /**
+     * One column of the layout, offset and width are counted in bytes from the start of the line.
+     */
+    public record Column(String name, int offset, int width, Type type) {
+
+        public Column {
+            if (offset < 0 || width < 1) {
+                throw new IllegalArgumentException("Invalid column " + name + " offset " + offset + " width " + width);
+            }
+        }
+    }
+
+    /**
+     * Layout of files/fixedWidth.txt, the same columns as the "(.{15})(.{3})(.{12})(.{8})(.{2}).*" regex.
+     */
+    public static final List<Column> EMPLOYEE_LAYOUT = List.of(
+            new Column("Name", 0, 15, Type.TEXT),
+            new Column("Age", 15, 3, Type.INT),
+            new Column("Dept", 18, 12, Type.TEXT),
+            new Column("Salary", 30, 8, Type.LONG),
+            new Column("State", 38, 2, Type.TEXT));
+
+    private static final long MAX_WINDOW = 1L << 30;
+
+    private final List<Column> layout;
+    private final int minLineLength;
+    private final long windowSize;
+
+    public FixedWidthReader(List<Column> layout) {
+        this(layout, MAX_WINDOW);
+    }
+
+    FixedWidthReader(List<Column> layout, long windowSize) {
+        this.layout = List.copyOf(layout);
+        this.minLineLength = this.layout.stream().mapToInt(c -> c.offset() + c.width()).max().orElse(0);
+        this.windowSize = windowSize;
+    }
+
+    public List<Column> getLayout() {
+        return layout;
+    }
+
+    /**
+     * Index of the column with the given name, so callers can look it up once and use the index per row.
+     */
+    public int columnIndex(String name) {
+        for (int i = 0; i < layout.size(); i++) {
+            if (layout.get(i).name().equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("No column named " + name);
+    }
+
+    /**
+     * Calls the action for every line that is at least as long as the layout, like the regex only matches those.
+     * @param skipLines number of lines to skip at the start, 1 for a file with a header line.
+     * @return the number of rows passed to the action.
+     */
+    public long forEach(Path path, int skipLines, Consumer<? super Row> action) throws IOException {
+        if (Compression.detect(path) != Compression.NONE) {
+            return forEachDecompressed(path, skipLines, action);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long windowStart = 0;
+            Scan scan = new Scan(skipLines, action);
+            while (windowStart < size) {
+                long windowLength = Math.min(windowSize, size - windowStart);
+                boolean lastWindow = windowStart + windowLength == size;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+                int limit = (int) windowLength;
+                int lineStart = scan.lines(buffer, limit, lastWindow);
+                if (lineStart == 0 && !lastWindow) {
+                    throw new IOException("Line at byte " + windowStart + " of " + path + " is longer than "
+                            + windowSize + " bytes");
+                }
+                windowStart += Math.min(lineStart, limit);
+            }
+            return scan.rows;
+        }
+    }
+
+    /**
+     * The chunks of a compressed file always end after a newline, so each one is scanned as a last window.
+     */
+    private long forEachDecompressed(Path path, int skipLines, Consumer<? super Row> action) throws IOException {
+        int chunkSize = (int) Math.min(windowSize, ChunkedLineSource.DEFAULT_CHUNK_SIZE);
+        Scan scan = new Scan(skipLines, action);
+        try (Stream<ChunkedLineSource.Chunk> chunks = new ChunkedLineSource(path, chunkSize).chunks().sequential()) {
+            Iterator<ChunkedLineSource.Chunk> iterator = chunks.iterator();
+            while (iterator.hasNext()) {
+                ByteBuffer buffer = iterator.next().buffer();
+                scan.lines(buffer, buffer.limit(), true);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return scan.rows;
+    }
+
+    /**
+     * Line counting state of one forEach() call, carried from one window to the next.
+     */
+    private final class Scan {
+
+        private final int skipLines;
+        private final Consumer<? super Row> action;
+        private final Row row = new Row();
+        private long lineNumber;
+        private long rows;
+
+        private Scan(int skipLines, Consumer<? super Row> action) {
+            this.skipLines = skipLines;
+            this.action = action;
+        }
+
+        /**
+         * Passes the complete lines of the buffer to the action.
+         * @return the start of the first line that continues in the next window, or limit.
+         */
+        private int lines(ByteBuffer buffer, int limit, boolean lastWindow) {
+            int lineStart = 0;
+            while (lineStart < limit) {
+                int lineEnd = lineStart;
+                while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                if (lineEnd == limit && !lastWindow) {
+                    break; // the line continues in the next window
+                }
+                int contentEnd = lineEnd;
+                if (contentEnd > lineStart && buffer.get(contentEnd - 1) == '\r') {
+                    contentEnd--;
+                }
+                if (lineNumber++ >= skipLines && contentEnd - lineStart >= minLineLength) {
+                    action.accept(row.set(buffer, lineStart, contentEnd - lineStart));
+                    rows++;
+                }
+                lineStart = lineEnd + 1;
+            }
+            return lineStart;
+        }
+    }
+
+    /**
+     * Flyweight view of the current line. It is only valid inside the action, copy what has to be kept.
+     */
+    public final class Row {
+
+        private ByteBuffer buffer;
+        private int lineStart;
+        private int lineLength;
+        private final ByteCharSequence[] views = new ByteCharSequence[layout.size()];
+
+        private Row() {
+            for (int i = 0; i < views.length; i++) {
+                views[i] = new ByteCharSequence();
+            }
+        }
+
+        private Row set(ByteBuffer buffer, int lineStart, int lineLength) {
+            this.buffer = buffer;
+            this.lineStart = lineStart;
+            this.lineLength = lineLength;
+            return this;
+        }
+
+        /**
+         * Column content without the padding. The returned view is reused, call toString() to keep it.
+         */
+        public CharSequence text(int column) {
+            Column c = layout.get(column);
+            return views[column].set(buffer, lineStart + c.offset(), c.width()).trim();
+        }
+
+        public String getString(int column) {
+            return text(column).toString();
+        }
+
+        public boolean textEquals(int column, CharSequence value) {
+            Column c = layout.get(column);
+            return views[column].set(buffer, lineStart + c.offset(), c.width()).trim().contentEquals(value);
+        }
+
+        public int getInt(int column) {
+            long value = getLong(column);
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                throw new NumberFormatException("Column " + layout.get(column).name() + " is out of int range");
+            }
+            return (int) value;
+        }
+
+        /**
+         * Parses the digits of the column directly from the bytes, surrounding padding is ignored.
+         */
+        public long getLong(int column) {
+            Column c = layout.get(column);
+            int position = lineStart + c.offset();
+            int end = position + c.width();
+            while (position < end && buffer.get(position) == ' ') {
+                position++;
+            }
+            while (end > position && buffer.get(end - 1) == ' ') {
+                end--;
+            }
+            boolean negative = position < end && buffer.get(position) == '-';
+            if (negative || (position < end && buffer.get(position) == '+')) {
+                position++;
+            }
+            if (position == end) {
+                throw new NumberFormatException("Column " + c.name() + " is empty");
+            }
+            long value = 0;
+            for (; position < end; position++) {
+                int digit = buffer.get(position) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new NumberFormatException("Column " + c.name() + " is not a number: " + text(column));
+                }
+                value = value * 10 + digit;
+            }
+            return negative ? -value : value;
+        }
+
+        /**
+         * Column value boxed according to its type, for callers that prefer generic access.
+         */
+        public Object getValue(int column) {
+            return switch (layout.get(column).type()) {
+                case TEXT -> getString(column);
+                case INT -> getInt(column);
+                case LONG -> getLong(column);
+            };
+        }
+
+        public int lineLength() {
+            return lineLength;
+        }
+    }
+}
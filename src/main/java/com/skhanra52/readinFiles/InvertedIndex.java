@@ -0,0 +1,317 @@
+package com.skhanra52.readinFiles;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A full-text index of the files of a directory tree, read from the file {@link InvertedIndexBuilder} writes.
+ * <p>
+ * Finding the files that contain a word with Files.find() and a Scanner reads every file of the tree again for every
+ * question. The index maps every token (see {@link TokenStatistics} for what a token is, ASCII letters are folded
+ * to lower case) to the ids of the files containing it, so a lookup only reads the ids of the tokens asked for.
+ * <p>
+ * The index file has four parts:
+ * <ul>
+ *     <li>a header with the root of the tree;</li>
+ *     <li>the file table: path relative to the root, size and modified time of every file, the position in the
+ *     table is the file id;</li>
+ *     <li>the postings: for every term the ascending ids of its files, each one stored as the difference to the
+ *     previous id in a variable length integer (7 bits per byte), so most ids take one byte;</li>
+ *     <li>the term dictionary: the sorted terms, each one stored as the length of the prefix it shares with the
+ *     previous term and the rest, with its file count and the length of its postings.</li>
+ * </ul>
+ * A footer at the end holds the offsets of the postings and of the dictionary. {@link #open(Path)} reads the file
+ * table and the dictionary into memory and maps the file; the postings of a term are only decoded when it is looked
+ * up, straight from the mapped bytes. An opened index doesn't change any more and can be queried from several
+ * threads.
+ */
+public final class InvertedIndex {
+
+    /**
+     * A file of the index, with the size and modified time it had when it was read.
+     */
+    public record FileInfo(Path path, long size, long lastModifiedMillis) {
+
+        public FileTime lastModified() {
+            return FileTime.fromMillis(lastModifiedMillis);
+        }
+    }
+
+    static final int MAGIC = 0x494E5658; // "INVX"
+    static final int VERSION = 1;
+    static final int FOOTER_SIZE = 8 + 8 + 4; // postings offset, dictionary offset, magic
+
+    private final Path indexFile;
+    private final Path root;
+    private final List<FileInfo> files;
+    private final String[] terms;
+    private final int[] fileCounts;
+    private final int[] postingsOffsets;
+    private final ByteBuffer content;
+
+    private InvertedIndex(Path indexFile, Path root, List<FileInfo> files, String[] terms, int[] fileCounts,
+                          int[] postingsOffsets, ByteBuffer content) {
+        this.indexFile = indexFile;
+        this.root = root;
+        this.files = files;
+        this.terms = terms;
+        this.fileCounts = fileCounts;
+        this.postingsOffsets = postingsOffsets;
+        this.content = content;
+    }
+
+    public static InvertedIndex open(Path indexFile) throws IOException {
+        ByteBuffer content;
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(indexFile + " is larger than 2 GB");
+            }
+            content = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        int limit = content.limit();
+        if (limit < 8 + FOOTER_SIZE || content.getInt(0) != MAGIC || content.getInt(limit - 4) != MAGIC) {
+            throw new IOException(indexFile + " is not an inverted index");
+        }
+        if (content.getInt(4) != VERSION) {
+            throw new IOException(indexFile + " has unsupported version " + content.getInt(4));
+        }
+        try {
+            long postingsStart = content.getLong(limit - FOOTER_SIZE);
+            long dictionaryStart = content.getLong(limit - FOOTER_SIZE + 8);
+            ByteBuffer in = content.duplicate().position(8);
+            Path root = Path.of(readString(in));
+            FileInfo[] files = new FileInfo[readVarint(in)];
+            for (int id = 0; id < files.length; id++) {
+                files[id] = new FileInfo(root.resolve(readString(in)), in.getLong(), in.getLong());
+            }
+
+            in.position(Math.toIntExact(dictionaryStart));
+            int termCount = readVarint(in);
+            String[] terms = new String[termCount];
+            int[] fileCounts = new int[termCount];
+            int[] postingsOffsets = new int[termCount];
+            int offset = Math.toIntExact(postingsStart);
+            String previous = "";
+            for (int t = 0; t < termCount; t++) {
+                int shared = readVarint(in);
+                terms[t] = previous.substring(0, shared) + readString(in);
+                fileCounts[t] = readVarint(in);
+                postingsOffsets[t] = offset;
+                offset += readVarint(in);
+                previous = terms[t];
+            }
+            return new InvertedIndex(indexFile, root, List.of(files), terms, fileCounts, postingsOffsets, content);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                 | ArithmeticException e) {
+            throw new IOException(indexFile + " is corrupt", e);
+        }
+    }
+
+    public Path getIndexFile() {
+        return indexFile;
+    }
+
+    /**
+     * The absolute path of the indexed tree.
+     */
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * The indexed files, by file id.
+     */
+    public List<FileInfo> getFiles() {
+        return files;
+    }
+
+    public int getTermCount() {
+        return terms.length;
+    }
+
+    /**
+     * The number of files containing the token, 0 if none does.
+     */
+    public int getFileCount(String token) {
+        int term = Arrays.binarySearch(terms, normalize(token));
+        return term < 0 ? 0 : fileCounts[term];
+    }
+
+    /**
+     * The files containing the token. A string that holds several tokens (like "file-name") finds the files
+     * containing all of them.
+     */
+    public List<Path> search(String token) {
+        return and(token);
+    }
+
+    /**
+     * The files containing every token of the words, in file id order.
+     */
+    public List<Path> and(String... words) {
+        return paths(all(tokens(words)));
+    }
+
+    /**
+     * The files containing at least one token of the words, in file id order.
+     */
+    public List<Path> or(String... words) {
+        BitSet ids = new BitSet(files.size());
+        for (String token : tokens(words)) {
+            int term = Arrays.binarySearch(terms, token);
+            if (term >= 0) {
+                for (int id : postings(term)) {
+                    ids.set(id);
+                }
+            }
+        }
+        return paths(ids.stream().toArray());
+    }
+
+    /**
+     * Runs a query of words separated by spaces and "OR": the words between two ORs must all be in a file, and a
+     * file is found when one of the groups matches. "java files OR scanner" finds the files containing both "java"
+     * and "files", and the files containing "scanner". An "AND" between words is allowed, it changes nothing.
+     */
+    public List<Path> query(String query) {
+        BitSet ids = new BitSet(files.size());
+        List<String> group = new ArrayList<>();
+        String[] words = query.trim().split("\\s+");
+        for (int i = 0; i <= words.length; i++) {
+            if (i == words.length || words[i].equals("OR")) {
+                for (int id : all(tokens(group.toArray(String[]::new)))) {
+                    ids.set(id);
+                }
+                group.clear();
+            } else if (!words[i].equals("AND")) {
+                group.add(words[i]);
+            }
+        }
+        return paths(ids.stream().toArray());
+    }
+
+    String term(int term) {
+        return terms[term];
+    }
+
+    /**
+     * Decodes the file ids of the term from the mapped postings.
+     */
+    int[] postings(int term) {
+        int[] ids = new int[fileCounts[term]];
+        int position = postingsOffsets[term];
+        int id = 0;
+        for (int i = 0; i < ids.length; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = content.get(position++);
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            id += delta;
+            ids[i] = id;
+        }
+        return ids;
+    }
+
+    /**
+     * The ids of the files containing all tokens, intersected from the shortest postings up. No tokens match
+     * nothing.
+     */
+    private int[] all(List<String> tokens) {
+        if (tokens.isEmpty()) {
+            return new int[0];
+        }
+        int[] found = new int[tokens.size()];
+        for (int i = 0; i < found.length; i++) {
+            found[i] = Arrays.binarySearch(terms, tokens.get(i));
+            if (found[i] < 0) {
+                return new int[0];
+            }
+        }
+        int[] order = Arrays.stream(found).boxed()
+                .sorted(Comparator.comparingInt(term -> fileCounts[term]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        int[] ids = postings(order[0]);
+        for (int i = 1; i < order.length && ids.length > 0; i++) {
+            ids = intersect(ids, postings(order[i]));
+        }
+        return ids;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private List<Path> paths(int[] ids) {
+        List<Path> paths = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            paths.add(files.get(id).path());
+        }
+        return paths;
+    }
+
+    /**
+     * Splits the words into tokens the way the files were split, so a query token is spelled like the terms.
+     */
+    private static List<String> tokens(String... words) {
+        TokenStatistics.TokenTable table = new TokenStatistics.TokenTable(true);
+        for (String word : words) {
+            table.tokenize(ByteBuffer.wrap(word.getBytes(StandardCharsets.UTF_8)), 1);
+        }
+        return List.of(table.tokens());
+    }
+
+    private static String normalize(String token) {
+        List<String> tokens = tokens(token);
+        return tokens.size() == 1 ? tokens.get(0) : "";
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[readVarint(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
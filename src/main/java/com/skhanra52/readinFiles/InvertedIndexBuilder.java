@@ -0,0 +1,340 @@
+package com.skhanra52.readinFiles;
+
+import com.skhanra52.DirectoryLister;
+import com.skhanra52.managingFileOper.FileOperationFailure;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Writes the {@link InvertedIndex} of a directory tree.
+ * <p>
+ * The tree is walked once by a parallel {@link DirectoryLister}, which also gives the size and modified time of
+ * every file. The files are then tokenized in parallel, each one by a single fork-join worker reading its
+ * {@link ChunkedLineSource} chunks into its own token table, so GZIP and block compressed files are indexed by their
+ * content. Only the inversion, adding the file ids to the term lists in file id order, runs on the calling thread.
+ * <p>
+ * {@link #update(Path, Path)} reuses an existing index: a file whose size and modified time are the ones in the
+ * index is not read again, its ids are taken over from the old postings. Files that changed or are new are read,
+ * files that are gone are dropped. The size and time recorded are the ones the walk saw before the file was read,
+ * so a file changed while the index was being built is read again by the next update.
+ * <p>
+ * The index is written to a temporary file that then replaces the old index, so a failed build leaves the old one
+ * intact. A file that can't be read is left out of the index and recorded in {@link Result#failures()}.
+ */
+public class InvertedIndexBuilder {
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Walks and reads in the common fork-join pool.
+     */
+    public InvertedIndexBuilder() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Walks and reads in the given pool, give it more threads than cores for a network file system.
+     */
+    public InvertedIndexBuilder(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * What the build read, and the index it wrote.
+     */
+    public record Result(InvertedIndex index, int indexed, int reused,
+                         List<FileOperationFailure> failures, Duration elapsed) {
+
+        public boolean isComplete() {
+            return failures.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "%d files indexed in %d ms, %d read, %d unchanged, %d failed, %d terms".formatted(
+                    index.getFiles().size(), elapsed.toMillis(), indexed, reused, failures.size(),
+                    index.getTermCount());
+        }
+    }
+
+    /**
+     * Reads every file of the tree and writes a new index.
+     */
+    public Result build(Path root, Path indexFile) throws IOException {
+        return build(root, indexFile, null);
+    }
+
+    /**
+     * Updates the index of the tree, only reading the files that changed since it was written. Without an index
+     * file, or with the index of another tree, this is {@link #build(Path, Path)}.
+     */
+    public Result update(Path root, Path indexFile) throws IOException {
+        InvertedIndex previous = null;
+        if (Files.exists(indexFile)) {
+            previous = InvertedIndex.open(indexFile);
+            if (!previous.getRoot().equals(root.toAbsolutePath().normalize())) {
+                previous = null;
+            }
+        }
+        return build(root, indexFile, previous);
+    }
+
+    private Result build(Path root, Path indexFile, InvertedIndex previous) throws IOException {
+        long startNanos = System.nanoTime();
+        Path absoluteRoot = root.toAbsolutePath().normalize();
+        Path absoluteIndex = indexFile.toAbsolutePath().normalize();
+        DirectoryLister.Listing listing = new DirectoryLister(pool).setParallel(true)
+                .walk(absoluteRoot, Integer.MAX_VALUE);
+        Queue<FileOperationFailure> failures = new ConcurrentLinkedQueue<>(listing.failures());
+
+        // files that are still the ones in the previous index keep their order, so their old ids map to ascending
+        // new ids and the old postings stay sorted
+        Map<Path, Integer> previousIds = new HashMap<>();
+        if (previous != null) {
+            List<InvertedIndex.FileInfo> previousFiles = previous.getFiles();
+            for (int id = 0; id < previousFiles.size(); id++) {
+                previousIds.put(previousFiles.get(id).path(), id);
+            }
+        }
+        boolean[] unchanged = new boolean[previousIds.size()];
+        List<DirectoryLister.Entry> changed = new ArrayList<>();
+        for (DirectoryLister.Entry entry : listing.entries()) {
+            if (entry.kind() != DirectoryLister.Kind.FILE || isIndexFile(entry.path(), absoluteIndex)) {
+                continue;
+            }
+            Integer id = previousIds.get(entry.path());
+            InvertedIndex.FileInfo known = id == null ? null : previous.getFiles().get(id);
+            if (known != null && known.size() == entry.size()
+                    && known.lastModifiedMillis() == entry.lastModifiedMillis()) {
+                unchanged[id] = true;
+            } else {
+                changed.add(entry);
+            }
+        }
+        List<InvertedIndex.FileInfo> files = new ArrayList<>();
+        int[] reusedIds = new int[unchanged.length];
+        for (int id = 0; id < unchanged.length; id++) {
+            reusedIds[id] = unchanged[id] ? files.size() : -1;
+            if (unchanged[id]) {
+                files.add(previous.getFiles().get(id));
+            }
+        }
+        int reused = files.size();
+
+        String[][] tokens = new String[changed.size()][];
+        pool.submit(() -> IntStream.range(0, changed.size()).parallel().forEach(i -> {
+            Path file = changed.get(i).path();
+            try {
+                tokens[i] = tokenize(file);
+            } catch (IOException e) {
+                failures.add(new FileOperationFailure(file, e));
+            }
+        })).join();
+
+        Map<String, IntList> postings = new HashMap<>();
+        if (previous != null) {
+            for (int term = 0; term < previous.getTermCount(); term++) {
+                IntList ids = new IntList();
+                for (int id : previous.postings(term)) {
+                    if (reusedIds[id] >= 0) {
+                        ids.add(reusedIds[id]);
+                    }
+                }
+                if (ids.size > 0) {
+                    postings.put(previous.term(term), ids);
+                }
+            }
+        }
+        for (int i = 0; i < tokens.length; i++) {
+            if (tokens[i] == null) {
+                continue;
+            }
+            DirectoryLister.Entry entry = changed.get(i);
+            int id = files.size();
+            files.add(new InvertedIndex.FileInfo(entry.path(), entry.size(), entry.lastModifiedMillis()));
+            for (String token : tokens[i]) {
+                // distinct byte sequences that aren't valid UTF-8 can decode to the same String
+                IntList ids = postings.computeIfAbsent(token, t -> new IntList());
+                if (ids.size == 0 || ids.values[ids.size - 1] != id) {
+                    ids.add(id);
+                }
+            }
+        }
+
+        write(absoluteRoot, absoluteIndex, files, postings);
+        return new Result(InvertedIndex.open(indexFile), files.size() - reused, reused, List.copyOf(failures),
+                Duration.ofNanos(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * The index itself, and the temporary file it is written to, when they are inside the tree.
+     */
+    private static boolean isIndexFile(Path path, Path indexFile) {
+        return path.getParent().equals(indexFile.getParent())
+                && path.getFileName().toString().startsWith(indexFile.getFileName().toString());
+    }
+
+    private static String[] tokenize(Path file) throws IOException {
+        TokenStatistics.TokenTable table = new TokenStatistics.TokenTable(true);
+        try (Stream<ChunkedLineSource.Chunk> chunks = new ChunkedLineSource(file).chunks()) {
+            chunks.sequential().forEach(chunk -> table.tokenize(chunk.buffer(), 1));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return table.tokens();
+    }
+
+    private static void write(Path root, Path indexFile, List<InvertedIndex.FileInfo> files,
+                              Map<String, IntList> postings) throws IOException {
+        String[] terms = postings.keySet().toArray(String[]::new);
+        Arrays.parallelSort(terms);
+        Path temp = Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+        try {
+            try (IndexOutput out = new IndexOutput(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(InvertedIndex.MAGIC);
+                out.writeInt(InvertedIndex.VERSION);
+                out.writeString(root.toString());
+                out.writeVarint(files.size());
+                for (InvertedIndex.FileInfo file : files) {
+                    out.writeString(root.relativize(file.path()).toString());
+                    out.writeLong(file.size());
+                    out.writeLong(file.lastModifiedMillis());
+                }
+
+                long postingsStart = out.position;
+                int[] postingsLengths = new int[terms.length];
+                for (int t = 0; t < terms.length; t++) {
+                    long start = out.position;
+                    IntList ids = postings.get(terms[t]);
+                    int previous = 0;
+                    for (int i = 0; i < ids.size; i++) {
+                        out.writeVarint(ids.values[i] - previous);
+                        previous = ids.values[i];
+                    }
+                    postingsLengths[t] = (int) (out.position - start);
+                }
+
+                long dictionaryStart = out.position;
+                out.writeVarint(terms.length);
+                String previousTerm = "";
+                for (int t = 0; t < terms.length; t++) {
+                    int shared = sharedPrefix(previousTerm, terms[t]);
+                    out.writeVarint(shared);
+                    out.writeString(terms[t].substring(shared));
+                    out.writeVarint(postings.get(terms[t]).size);
+                    out.writeVarint(postingsLengths[t]);
+                    previousTerm = terms[t];
+                }
+                out.writeLong(postingsStart);
+                out.writeLong(dictionaryStart);
+                out.writeInt(InvertedIndex.MAGIC);
+                if (out.position > Integer.MAX_VALUE) {
+                    throw new IOException("The index of " + root + " is larger than 2 GB");
+                }
+            }
+            Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * The number of leading chars the terms share, not ending between the two chars of a surrogate pair, since
+     * the rest is stored as UTF-8.
+     */
+    private static int sharedPrefix(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        int shared = 0;
+        while (shared < length && a.charAt(shared) == b.charAt(shared)) {
+            shared++;
+        }
+        if (shared > 0 && Character.isHighSurrogate(a.charAt(shared - 1))) {
+            shared--;
+        }
+        return shared;
+    }
+
+    private static final class IntList {
+
+        private int[] values = new int[4];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    /**
+     * Big-endian output that counts the bytes written, for the offsets in the footer.
+     */
+    private static final class IndexOutput implements AutoCloseable {
+
+        private final OutputStream out;
+        private long position;
+
+        private IndexOutput(OutputStream out) {
+            this.out = out;
+        }
+
+        private void writeByte(int b) throws IOException {
+            out.write(b);
+            position++;
+        }
+
+        private void writeInt(int value) throws IOException {
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                writeByte(value >>> shift);
+            }
+        }
+
+        private void writeLong(long value) throws IOException {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                writeByte((int) (value >>> shift));
+            }
+        }
+
+        /**
+         * 7 bits per byte, lowest first, the high bit set on all bytes but the last.
+         */
+        private void writeVarint(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            writeByte(value);
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            out.write(bytes);
+            position += bytes.length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
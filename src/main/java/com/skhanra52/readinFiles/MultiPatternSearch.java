@@ -0,0 +1,486 @@
+package com.skhanra52.readinFiles;
+
+import com.skhanra52.compression.Compression;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Searches a file for many literal and regex patterns at once, in a single pass over its bytes.
+ * <p>
+ * ReadingWithScannerFiveMain runs one Scanner.findAll() per pattern, each one decoding the whole file and running
+ * its regex at every position. Here all the literals are compiled into one Aho-Corasick automaton, a table with the
+ * next state for every state and byte, so the file is scanned once, one table lookup per byte, however many patterns
+ * there are. A literal pattern is reported straight from the automaton. A regex pattern gets the literals every one
+ * of its matches has to contain (its anchors, see {@link #regex(String, Pattern, String...)}) and its regex only runs
+ * on the lines where the automaton found one of them. A regex without any anchor, like "[A-Za-z]{10,}", has to run
+ * on every line.
+ * <p>
+ * The file is memory mapped (in windows that end after a newline for files over 1 GB) and read as single byte
+ * characters (ASCII / ISO-8859-1), like {@link ChunkedLineSource}. Regex matches don't span lines, and a literal can't
+ * contain a newline. A compressed file (see {@link Compression}) is decompressed chunk by chunk instead of mapped.
+ * <p>
+ * The patterns are compiled on the first search, after that no more can be added. A compiled search can be used by
+ * several threads at once, one file each.
+ */
+public class MultiPatternSearch {
+
+    /**
+     * One match: the pattern that matched, where the match starts (the byte offset in the file and the 1 based line
+     * number) and the groups, group 0 being the whole match. Groups that didn't take part in the match are null.
+     */
+    public record Match(Path file, String pattern, long offset, long line, List<String> groups) {
+
+        public String text() {
+            return groups.get(0);
+        }
+    }
+
+    private static final long MAX_WINDOW = 1L << 30;
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Pattern> regexes = new ArrayList<>(); // null for a literal pattern
+    private final List<List<String>> anchors = new ArrayList<>();
+    private volatile Automaton automaton;
+
+    /**
+     * Adds a literal pattern, found wherever the text occurs, overlapping occurrences included.
+     */
+    public MultiPatternSearch literal(String name, String text) {
+        if (text.isEmpty()) {
+            throw new IllegalArgumentException("Literal pattern " + name + " is empty");
+        }
+        return add(name, null, List.of(text));
+    }
+
+    /**
+     * Adds a regex pattern. The anchors are taken from the regex: the longest run of plain characters that every
+     * match has to contain, one per alternative when the regex is an alternation. When no such run can be found the
+     * regex runs on every line.
+     */
+    public MultiPatternSearch regex(String name, String regex) {
+        return regex(name, Pattern.compile(regex));
+    }
+
+    /**
+     * Adds a regex pattern with the given anchors, literals of which every match contains at least one, for regexes
+     * whose anchors can't be taken from the regex itself (case insensitive ones, for instance). Without anchors the
+     * anchors are taken from the regex.
+     */
+    public MultiPatternSearch regex(String name, Pattern pattern, String... anchors) {
+        List<String> required = anchors.length > 0 ? List.of(anchors) : requiredLiterals(pattern);
+        return add(name, pattern, required);
+    }
+
+    private synchronized MultiPatternSearch add(String name, Pattern pattern, List<String> literals) {
+        if (automaton != null) {
+            throw new IllegalStateException("Patterns can't be added after the first search");
+        }
+        for (String literal : literals) {
+            for (int i = 0; i < literal.length(); i++) {
+                char c = literal.charAt(i);
+                if (c > 0xFF || c == '\n') {
+                    throw new IllegalArgumentException("Literal " + literal + " of " + name
+                            + " can't be matched as single byte characters");
+                }
+            }
+        }
+        names.add(name);
+        regexes.add(pattern);
+        anchors.add(literals);
+        return this;
+    }
+
+    /**
+     * The anchors of every pattern, as they were given or taken from the regex. Empty for a regex that runs on
+     * every line.
+     */
+    public List<List<String>> getAnchors() {
+        return List.copyOf(anchors);
+    }
+
+    public List<Match> search(Path file) throws IOException {
+        List<Match> matches = new ArrayList<>();
+        search(file, matches::add);
+        return matches;
+    }
+
+    /**
+     * Calls the action for every match, line by line. Within a line the literal patterns come first, then the regex
+     * patterns in the order they were added.
+     */
+    public void search(Path file, Consumer<? super Match> action) throws IOException {
+        Scan scan = new Scan(compile(), file, action);
+        if (Compression.detect(file) != Compression.NONE) {
+            try (Stream<ChunkedLineSource.Chunk> chunks = new ChunkedLineSource(file).chunks().sequential()) {
+                Iterator<ChunkedLineSource.Chunk> iterator = chunks.iterator();
+                while (iterator.hasNext()) {
+                    ChunkedLineSource.Chunk chunk = iterator.next();
+                    scan.scan(chunk.buffer(), chunk.buffer().limit(), chunk.offset());
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long windowStart = 0;
+            while (windowStart < size) {
+                long windowLength = Math.min(MAX_WINDOW, size - windowStart);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+                int limit = (int) windowLength;
+                if (windowStart + windowLength < size) {
+                    while (limit > 0 && window.get(limit - 1) != '\n') {
+                        limit--;
+                    }
+                    if (limit == 0) {
+                        throw new IOException("Line at byte " + windowStart + " of " + file + " is longer than "
+                                + MAX_WINDOW + " bytes");
+                    }
+                }
+                scan.scan(window, limit, windowStart);
+                windowStart += limit;
+            }
+        }
+    }
+
+    private Automaton compile() {
+        Automaton compiled = automaton;
+        if (compiled == null) {
+            synchronized (this) {
+                if (automaton == null) {
+                    automaton = new Automaton(anchors);
+                }
+                compiled = automaton;
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * The literals every match of the regex contains: per top level alternative, the longest run of plain
+     * characters outside of groups and classes that isn't optional. Empty when an alternative has no such run, or
+     * when flags change how the characters match.
+     */
+    static List<String> requiredLiterals(Pattern pattern) {
+        String regex = pattern.pattern();
+        if ((pattern.flags() & Pattern.LITERAL) != 0) {
+            boolean singleByte = regex.chars().allMatch(c -> c <= 0xFF && c != '\n');
+            return regex.isEmpty() || !singleByte ? List.of() : List.of(regex);
+        }
+        int ignored = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.COMMENTS | Pattern.CANON_EQ;
+        if ((pattern.flags() & ignored) != 0 || regex.matches("(?s).*\\(\\?[a-zA-Z-]*[ixuUc][a-zA-Z-]*[:)].*")) {
+            return List.of();
+        }
+        List<String> literals = new ArrayList<>();
+        int branchStart = 0;
+        for (int i = 0; i <= regex.length(); i++) {
+            if (i == regex.length() || regex.charAt(i) == '|') {
+                String literal = requiredRun(regex, branchStart, i);
+                if (literal.isEmpty()) {
+                    return List.of();
+                }
+                literals.add(literal);
+                branchStart = i + 1;
+            } else if (regex.charAt(i) == '\\') {
+                i++;
+            } else if (regex.charAt(i) == '[') {
+                i = skipClass(regex, i) - 1;
+            } else if (regex.charAt(i) == '(') {
+                i = skipGroup(regex, i) - 1;
+            }
+        }
+        return List.copyOf(literals);
+    }
+
+    private static String requiredRun(String regex, int start, int end) {
+        String best = "";
+        StringBuilder run = new StringBuilder();
+        int i = start;
+        while (i < end) {
+            char c = regex.charAt(i);
+            int next = i + 1;
+            char atom = 0;
+            boolean literal = false;
+            if (c == '\\') {
+                if (next >= end || Character.isLetterOrDigit(regex.charAt(next))) {
+                    break; // a class, a back reference or a coded character, the rest of the branch is left out
+                }
+                atom = regex.charAt(next);
+                literal = true;
+                next++;
+            } else if (c == '[') {
+                next = skipClass(regex, i);
+            } else if (c == '(') {
+                next = skipGroup(regex, i);
+            } else if (".^$*+?{".indexOf(c) < 0) {
+                atom = c;
+                literal = true;
+            }
+            boolean optional = false;
+            boolean repeated = false;
+            int beforeQuantifier = next;
+            if (next < end) {
+                char q = regex.charAt(next);
+                if (q == '*' || q == '?') {
+                    optional = true;
+                    next++;
+                } else if (q == '+') {
+                    repeated = true;
+                    next++;
+                } else if (q == '{') {
+                    int close = regex.indexOf('}', next);
+                    int minEnd = next + 1;
+                    while (minEnd < close && Character.isDigit(regex.charAt(minEnd))) {
+                        minEnd++;
+                    }
+                    optional = minEnd == next + 1 || Integer.parseInt(regex.substring(next + 1, minEnd)) == 0;
+                    repeated = true;
+                    next = close + 1;
+                }
+                if (next > beforeQuantifier && next < end
+                        && (regex.charAt(next) == '?' || regex.charAt(next) == '+')) {
+                    next++; // lazy or possessive quantifier
+                }
+            }
+            if (!literal || optional || atom > 0xFF || atom == '\n') {
+                best = longer(best, run);
+            } else {
+                run.append(atom);
+                if (repeated) {
+                    best = longer(best, run);
+                }
+            }
+            i = next;
+        }
+        return longer(best, run);
+    }
+
+    private static String longer(String best, StringBuilder run) {
+        String result = run.length() > best.length() ? run.toString() : best;
+        run.setLength(0);
+        return result;
+    }
+
+    private static int skipClass(String regex, int open) {
+        int i = open + 1;
+        if (i < regex.length() && regex.charAt(i) == '^') {
+            i++;
+        }
+        if (i < regex.length() && regex.charAt(i) == ']') {
+            i++;
+        }
+        int depth = 1;
+        for (; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                depth++;
+            } else if (c == ']' && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return regex.length();
+    }
+
+    private static int skipGroup(String regex, int open) {
+        int depth = 0;
+        for (int i = open; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                i = skipClass(regex, i) - 1;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return regex.length();
+    }
+
+    /**
+     * Aho-Corasick automaton over bytes. transitions[state * 256 + b] is the next state, failure links are already
+     * folded in, so the scan never backtracks. outputs[state] lists the literals ending in that state, including the
+     * ones that are a suffix of a longer literal.
+     */
+    private static final class Automaton {
+
+        private final int[] transitions;
+        private final int[][] outputs;
+        private final int[] literalPattern;
+        private final int[] literalLength;
+        private final BitSet everyLine = new BitSet();
+
+        private Automaton(List<List<String>> anchors) {
+            List<Integer> patterns = new ArrayList<>();
+            List<Integer> lengths = new ArrayList<>();
+            int[] goTo = new int[256 * 16];
+            Arrays.fill(goTo, -1);
+            List<int[]> own = new ArrayList<>();
+            own.add(new int[0]);
+            int states = 1;
+            for (int p = 0; p < anchors.size(); p++) {
+                if (anchors.get(p).isEmpty()) {
+                    everyLine.set(p);
+                }
+                for (String literal : anchors.get(p)) {
+                    int state = 0;
+                    for (int i = 0; i < literal.length(); i++) {
+                        int index = state * 256 + literal.charAt(i);
+                        if (goTo[index] < 0) {
+                            if (states * 256 == goTo.length) {
+                                int oldLength = goTo.length;
+                                goTo = Arrays.copyOf(goTo, oldLength * 2);
+                                Arrays.fill(goTo, oldLength, goTo.length, -1);
+                            }
+                            goTo[index] = states++;
+                            own.add(new int[0]);
+                        }
+                        state = goTo[index];
+                    }
+                    int[] ending = own.get(state);
+                    ending = Arrays.copyOf(ending, ending.length + 1);
+                    ending[ending.length - 1] = patterns.size();
+                    own.set(state, ending);
+                    patterns.add(p);
+                    lengths.add(literal.length());
+                }
+            }
+
+            transitions = Arrays.copyOf(goTo, states * 256);
+            outputs = new int[states][];
+            int[] failure = new int[states];
+            Queue<Integer> queue = new ArrayDeque<>();
+            outputs[0] = own.get(0);
+            for (int b = 0; b < 256; b++) {
+                int next = transitions[b];
+                if (next < 0) {
+                    transitions[b] = 0;
+                } else {
+                    failure[next] = 0;
+                    queue.add(next);
+                }
+            }
+            while (!queue.isEmpty()) {
+                int state = queue.remove();
+                int[] inherited = outputs[failure[state]];
+                int[] ending = own.get(state);
+                int[] merged = Arrays.copyOf(ending, ending.length + inherited.length);
+                System.arraycopy(inherited, 0, merged, ending.length, inherited.length);
+                outputs[state] = merged;
+                for (int b = 0; b < 256; b++) {
+                    int index = state * 256 + b;
+                    int next = transitions[index];
+                    int fallback = transitions[failure[state] * 256 + b];
+                    if (next < 0) {
+                        transitions[index] = fallback;
+                    } else {
+                        failure[next] = fallback;
+                        queue.add(next);
+                    }
+                }
+            }
+            literalPattern = patterns.stream().mapToInt(Integer::intValue).toArray();
+            literalLength = lengths.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * The state of one search: the line being scanned and the regex patterns that have to run on it.
+     */
+    private final class Scan {
+
+        private final Automaton automaton;
+        private final Path file;
+        private final Consumer<? super Match> action;
+        private final Matcher[] matchers = new Matcher[regexes.size()];
+        private final BitSet pending = new BitSet();
+        private final ByteCharSequence line = new ByteCharSequence();
+        private long lineNumber = 1;
+
+        private Scan(Automaton automaton, Path file, Consumer<? super Match> action) {
+            this.automaton = automaton;
+            this.file = file;
+            this.action = action;
+        }
+
+        /**
+         * Scans the complete lines of the buffer, which starts at the given offset of the file.
+         */
+        private void scan(ByteBuffer buffer, int limit, long offset) {
+            int[] transitions = automaton.transitions;
+            int[][] outputs = automaton.outputs;
+            int state = 0;
+            int lineStart = 0;
+            for (int i = 0; i < limit; i++) {
+                int b = buffer.get(i) & 0xFF;
+                if (b == '\n') {
+                    endLine(buffer, lineStart, i, offset);
+                    lineStart = i + 1;
+                    state = 0;
+                    continue;
+                }
+                state = transitions[state * 256 + b];
+                for (int literal : outputs[state]) {
+                    int pattern = automaton.literalPattern[literal];
+                    if (regexes.get(pattern) == null) {
+                        int start = i + 1 - automaton.literalLength[literal];
+                        action.accept(new Match(file, names.get(pattern), offset + start, lineNumber,
+                                List.of(anchors.get(pattern).get(0))));
+                    } else {
+                        pending.set(pattern);
+                    }
+                }
+            }
+            if (lineStart < limit) {
+                endLine(buffer, lineStart, limit, offset); // the last line of the file has no newline
+            }
+        }
+
+        /**
+         * Runs the regexes of the patterns whose anchors were found on the line, and of the ones without anchors.
+         */
+        private void endLine(ByteBuffer buffer, int lineStart, int lineEnd, long offset) {
+            pending.or(automaton.everyLine);
+            if (!pending.isEmpty()) {
+                int contentEnd = lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+                line.set(buffer, lineStart, contentEnd - lineStart);
+                for (int p = pending.nextSetBit(0); p >= 0; p = pending.nextSetBit(p + 1)) {
+                    Matcher matcher = matchers[p] == null ? matchers[p] = regexes.get(p).matcher(line)
+                            : matchers[p].reset(line);
+                    while (matcher.find()) {
+                        String[] groups = new String[matcher.groupCount() + 1];
+                        for (int g = 0; g < groups.length; g++) {
+                            groups[g] = matcher.group(g);
+                        }
+                        action.accept(new Match(file, names.get(p), offset + lineStart + matcher.start(), lineNumber,
+                                Collections.unmodifiableList(Arrays.asList(groups))));
+                    }
+                }
+                pending.clear();
+            }
+            lineNumber++;
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package com.skhanra52.readinFiles;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.regex.Matcher;
@@ -78,6 +81,72 @@ public class ReadingWithNIO2FourMain {
                 empCount.entrySet().forEach(System.out::println);
                 System.out.println(empCount);
             }
+
+            /*
+             FixedWidthReader:
+             All the above solutions run the regex on every line and create a String for the line plus one for each
+             group. Since the columns are at fixed positions, FixedWidthReader memory maps the file and slices the
+             columns out of the bytes by offset instead. The Row passed to the lambda is reused for every line, so
+             only the department names we keep in the set are turned into Strings.
+             */
+            FixedWidthReader reader = new FixedWidthReader(FixedWidthReader.EMPLOYEE_LAYOUT);
+            int dept = reader.columnIndex("Dept");
+            int salary = reader.columnIndex("Salary");
+            Set<String> departments = new TreeSet<>();
+            long[] totalSalary = new long[1];
+            reader.forEach(path, 1, row -> {
+                departments.add(row.getString(dept));
+                totalSalary[0] += row.getLong(salary);
+            });
+            System.out.println(departments + " total salary " + totalSalary[0]);
+
+            /*
+             ChunkedLineSource:
+             Files.lines() creates a String for every line and only splits UTF-8, US-ASCII and ISO-8859-1 files
+             between parallel workers. The chunked source cuts the file into newline aligned byte ranges which the
+             fork-join workers read at the same time, compressed files too. The lines are CharSequence views, and
+             Pattern.matcher() accepts a CharSequence, so the same distinct column pipeline works on top of it.
+             */
+            String[] parallelResult = new ChunkedLineSource(path).lines()
+                    .skip(1)
+                    .map(p::matcher)
+                    .filter(Matcher::matches)
+                    .map(m -> m.group(3).trim())
+                    .distinct()
+                    .sorted()
+                    .toArray(String[]::new);
+            System.out.println(Arrays.toString(parallelResult));
+
+            /*
+             TextDecoder:
+             new String(bytes) and readString() above decode every byte with the default charset into a new array,
+             although the file is plain ASCII. TextDecoder checks the bytes for anything above 0x7F first and hands
+             ASCII text out as a view over the bytes; only text with other bytes goes through its reused UTF-8
+             decoder. lines(Charset) does the same for every line of the chunked source.
+             */
+            TextDecoder decoder = new TextDecoder(StandardCharsets.UTF_8);
+            System.out.println(decoder.decode(ByteBuffer.wrap(Files.readAllBytes(path))));
+            long utf8Departments = new ChunkedLineSource(path).lines(StandardCharsets.UTF_8)
+                    .skip(1)
+                    .map(p::matcher)
+                    .filter(Matcher::matches)
+                    .map(m -> m.group(3).trim())
+                    .distinct()
+                    .count();
+            System.out.println(utf8Departments + " departments");
+
+            /*
+             AsyncChunkReader:
+             Every reader above waits for a read and then parses on the same thread. AsyncChunkReader keeps several
+             reads of an AsynchronousFileChannel in flight and parses the blocks already read on worker threads at
+             the same time; the results come back in file order.
+             */
+            List<Long> linesPerChunk = new AsyncChunkReader().read(path, chunk -> {
+                long[] lines = new long[1];
+                ChunkedLineSource.forEachLine(chunk.buffer(), line -> lines[0]++);
+                return lines[0];
+            });
+            System.out.println(linesPerChunk.stream().mapToLong(Long::longValue).sum() + " lines");
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
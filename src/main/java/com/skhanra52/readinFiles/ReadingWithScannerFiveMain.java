@@ -3,6 +3,7 @@ package com.skhanra52.readinFiles;
 import java.io.*;
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Scanner;
 import java.util.regex.MatchResult;
 
@@ -63,6 +64,60 @@ public class ReadingWithScannerFiveMain {
             throw new RuntimeException();
         }
 
+        /*
+         The same distinct listing, with the number of times each word occurs. TokenStatistics counts the tokens of
+         the file on all cores, each thread into its own hash table keyed on the bytes of the words, and only creates
+         Strings for the words it returns.
+         */
+        try {
+            TokenStatistics.Result words = new TokenStatistics().setMinLength(10).count(Path.of("files/fileReading.txt"));
+            System.out.printf("%d words of 10 letters or more, %d distinct%n", words.getTotalCount(),
+                    words.getDistinctCount());
+            words.tokens()
+                    .sorted(Comparator.comparing(TokenStatistics.TokenCount::token))
+                    .forEach(word -> System.out.println(word.token() + " " + word.count()));
+            System.out.println("Most frequent: " + words.top(3));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        /*
+         Every findAll() above and below is a full pass over the file for one pattern. MultiPatternSearch looks for
+         all of its patterns in one pass over the memory mapped bytes: the literals go through one Aho-Corasick
+         automaton, and a regex only runs on the lines where one of the literals it needs was found.
+         */
+        try {
+            MultiPatternSearch search = new MultiPatternSearch()
+                    .literal("java", "Java")
+                    .regex("long words", "[A-Za-z]{10,}")
+                    .regex("file methods", "Files\\.(\\w+)\\(");
+            for (MultiPatternSearch.Match match : search.search(Path.of("files/fileReading.txt"))) {
+                System.out.printf("%s line %d byte %d: %s%n", match.pattern(), match.line(), match.offset(),
+                        match.groups());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        /*
+         To find the files of a whole tree that contain a word, Files.find() plus a Scanner per file reads everything
+         again for every question. InvertedIndexBuilder reads the tree once into an index file of token -> file ids;
+         update() only reads the files whose size or modified time changed since, and queries only decode the ids of
+         the tokens asked for.
+         */
+        try {
+            Path indexFile = Path.of(System.getProperty("java.io.tmpdir"), "files.idx");
+            InvertedIndexBuilder.Result built = new InvertedIndexBuilder().update(Path.of("files"), indexFile);
+            System.out.println(built);
+            InvertedIndex index = built.index();
+            System.out.println("scanner: " + index.search("scanner"));
+            System.out.println("java AND path: " + index.and("java", "path"));
+            System.out.println("student OR engagement: " + index.or("student", "engagement"));
+            System.out.println("java files OR csv: " + index.query("java files OR csv"));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
         // demonstrating search feature here using findAll
 
         try(Scanner scanner2 = new Scanner(new File("files/fixedWidth.txt"))){
@@ -0,0 +1,211 @@
+package com.skhanra52.readinFiles;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Turns bytes into text without decoding them when they are plain ASCII.
+ * <p>
+ * new String(bytes), Files.readString() and every Reader run the bytes through a CharsetDecoder into a new char
+ * array (or String), even when every byte is ASCII and is its own char in UTF-8 and ISO-8859-1 alike. Most of our
+ * files are ASCII. Here a range of bytes is first checked for bytes above 0x7F, eight bytes at a time, and an ASCII
+ * range is handed out as a {@link CharSequence} view over the bytes, with nothing decoded or copied. Only a range
+ * with other bytes goes through the decoder, one decoder and one char buffer per TextDecoder, reused for every range.
+ * The ASCII bytes in front of the first other byte are copied as they are and only the rest is decoded.
+ * <p>
+ * The fast path is taken for UTF-8 and US-ASCII (ASCII ranges) and for ISO-8859-1 (every range, since every byte
+ * is its own char there). Other charsets always go through the reused decoder. Malformed input is replaced by
+ * U+FFFD, like new String(bytes, charset) does.
+ * <p>
+ * The line methods split the bytes at every 0x0A byte before decoding, so they only work for charsets in which "\n"
+ * is that single byte and no other char contains it. For the others (UTF-16 and UTF-32, where 0x0A is also a part
+ * of other chars) they throw UnsupportedOperationException; {@link #decode(ByteBuffer, int, int)} works for every
+ * charset.
+ * <p>
+ * The views returned by {@link #decode(ByteBuffer, int, int)} and passed by {@link #forEachLine(ByteBuffer, Consumer)}
+ * are reused by the next call, call toString() on the ones that have to be kept. A TextDecoder is not thread safe,
+ * use one per thread.
+ */
+public final class TextDecoder {
+
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long NEWLINES = 0x0A0A0A0A0A0A0A0AL;
+
+    private final Charset charset;
+    private final boolean asciiCompatible;
+    private final boolean everyByteIsAChar;
+    private final boolean splitsLines;
+    private final CharsetDecoder decoder;
+    private final ByteCharSequence view = new ByteCharSequence();
+    private CharBuffer chars = CharBuffer.allocate(256);
+
+    /**
+     * Decodes UTF-8.
+     */
+    public TextDecoder() {
+        this(StandardCharsets.UTF_8);
+    }
+
+    public TextDecoder(Charset charset) {
+        this.charset = charset;
+        this.everyByteIsAChar = charset.equals(StandardCharsets.ISO_8859_1);
+        this.asciiCompatible = everyByteIsAChar || charset.equals(StandardCharsets.UTF_8)
+                || charset.equals(StandardCharsets.US_ASCII);
+        this.splitsLines = splitsLines(charset);
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * The whole remaining content of the buffer as text, see {@link #decode(ByteBuffer, int, int)}.
+     */
+    public CharSequence decode(ByteBuffer buffer) {
+        return decode(buffer, buffer.position(), buffer.remaining());
+    }
+
+    /**
+     * The bytes from offset (an absolute index in the buffer) on as text: a view over the bytes when they need no
+     * decoding, otherwise the reused char buffer. Valid until the next call.
+     */
+    public CharSequence decode(ByteBuffer buffer, int offset, int length) {
+        return decode(buffer, offset, length, asciiLength(buffer, offset, length), true);
+    }
+
+    /**
+     * Whether lines of text in the charset can be split at the 0x0A bytes before decoding, see the class doc.
+     */
+    public static boolean splitsLines(Charset charset) {
+        return charset.canEncode() && Arrays.equals("\n".getBytes(charset), new byte[] {'\n'});
+    }
+
+    /**
+     * Calls the action for every line of the chunk, in order, with the line terminator ("\n" or "\r\n") removed.
+     * The line passed is reused for the next line.
+     *
+     * @throws UnsupportedOperationException when the charset doesn't encode "\n" as the single byte 0x0A.
+     */
+    public void forEachLine(ByteBuffer chunk, Consumer<? super CharSequence> action) {
+        forEachLine(chunk, true, action);
+    }
+
+    /**
+     * All lines of the chunk. ASCII lines are new views over the chunk, other lines are decoded into Strings, so
+     * they can all be kept.
+     *
+     * @throws UnsupportedOperationException when the charset doesn't encode "\n" as the single byte 0x0A.
+     */
+    public List<CharSequence> lines(ByteBuffer chunk) {
+        List<CharSequence> lines = new ArrayList<>();
+        forEachLine(chunk, false, lines::add);
+        return lines;
+    }
+
+    /**
+     * Finds the end of every line and its first byte above 0x7F in the same pass over the bytes, eight bytes at a
+     * time. The words are read little-endian so the first byte of the word is its lowest, and the lowest newline
+     * found by the zero byte test below is exact (its false positives are only above a real zero byte).
+     */
+    private void forEachLine(ByteBuffer chunk, boolean reuse, Consumer<? super CharSequence> action) {
+        if (!splitsLines) {
+            throw new UnsupportedOperationException("Lines of " + charset + " can't be split at 0x0A bytes");
+        }
+        ByteBuffer words = chunk.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int limit = chunk.limit();
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = -1;
+            int asciiEnd = -1;
+            int i = lineStart;
+            for (; i + 8 <= limit; i += 8) {
+                long word = words.getLong(i);
+                long x = word ^ NEWLINES;
+                long newlines = (x - LOW_BITS) & ~x & HIGH_BITS;
+                long high = word & HIGH_BITS;
+                if (newlines != 0) {
+                    int newline = Long.numberOfTrailingZeros(newlines) >>> 3;
+                    high &= (1L << (newline << 3)) - 1; // only the bytes before the newline
+                    if (asciiEnd < 0 && high != 0) {
+                        asciiEnd = i + (Long.numberOfTrailingZeros(high) >>> 3);
+                    }
+                    lineEnd = i + newline;
+                    break;
+                }
+                if (asciiEnd < 0 && high != 0) {
+                    asciiEnd = i + (Long.numberOfTrailingZeros(high) >>> 3);
+                }
+            }
+            if (lineEnd < 0) {
+                byte b;
+                for (lineEnd = i; lineEnd < limit && (b = chunk.get(lineEnd)) != '\n'; lineEnd++) {
+                    if (b < 0 && asciiEnd < 0) {
+                        asciiEnd = lineEnd;
+                    }
+                }
+            }
+            int contentEnd = lineEnd;
+            if (contentEnd > lineStart && chunk.get(contentEnd - 1) == '\r') {
+                contentEnd--;
+            }
+            int length = contentEnd - lineStart;
+            int ascii = asciiEnd < 0 ? length : Math.min(asciiEnd - lineStart, length);
+            action.accept(decode(chunk, lineStart, length, ascii, reuse));
+            lineStart = lineEnd + 1;
+        }
+    }
+
+    private CharSequence decode(ByteBuffer buffer, int offset, int length, int ascii, boolean reuse) {
+        if (everyByteIsAChar || (asciiCompatible && ascii == length)) {
+            return reuse ? view.set(buffer, offset, length) : new ByteCharSequence(buffer, offset, length);
+        }
+        CharBuffer decoded = decodeSlow(buffer, offset, length, asciiCompatible ? ascii : 0);
+        return reuse ? decoded : decoded.toString();
+    }
+
+    /**
+     * Copies the ASCII prefix char by char and runs the decoder over the rest, into the reused char buffer.
+     */
+    private CharBuffer decodeSlow(ByteBuffer buffer, int offset, int length, int ascii) {
+        int capacity = (int) Math.ceil(length * (double) decoder.maxCharsPerByte()) + 1;
+        if (chars.capacity() < capacity) {
+            chars = CharBuffer.allocate(Math.max(capacity, chars.capacity() * 2));
+        }
+        chars.clear();
+        for (int i = 0; i < ascii; i++) {
+            chars.put((char) buffer.get(offset + i));
+        }
+        decoder.reset();
+        ByteBuffer rest = buffer.slice(offset + ascii, length - ascii);
+        decoder.decode(rest, chars, true);
+        decoder.flush(chars);
+        return chars.flip();
+    }
+
+    /**
+     * The number of leading bytes of the range that are ASCII, checked eight at a time.
+     */
+    private static int asciiLength(ByteBuffer buffer, int offset, int length) {
+        int i = 0;
+        while (i + 8 <= length && (buffer.getLong(offset + i) & HIGH_BITS) == 0) {
+            i += 8;
+        }
+        while (i < length && buffer.get(offset + i) >= 0) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,320 @@
+package com.skhanra52.readinFiles;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Token frequencies of large text files, counted on all cores.
+ * <p>
+ * The distinct word listing in ReadingWithScannerFiveMain creates a String for every token on one thread, and
+ * distinct() keeps all of them in a HashSet. Here the file is split into newline aligned chunks by
+ * {@link ChunkedLineSource} and the chunks are tokenized by the parallel stream workers (map). Every split of the
+ * stream counts into its own {@link TokenTable}, an open addressing hash table keyed on the bytes of the token, so
+ * counting a token that was seen before allocates nothing and no counter is shared between threads. The tables of
+ * the splits are merged pairwise as the splits complete, in parallel as well (collect).
+ * <p>
+ * The tables keep the distinct tokens in one byte array and the counts in primitive arrays, so their size depends
+ * on the number of distinct tokens, not on the size of the file: a multi GB log with a few million distinct tokens
+ * needs a few hundred MB, whatever its length. Strings are only created for the tokens that are asked for.
+ * <p>
+ * A token is a run of ASCII letters, digits and underscores, or of bytes above 0x7F, so the words of a UTF-8 file
+ * stay whole. Everything else separates tokens. With {@link #setIgnoreCase(boolean)} ASCII letters are counted in
+ * lower case.
+ */
+public class TokenStatistics {
+
+    /**
+     * A token and the number of times it occurs.
+     */
+    public record TokenCount(String token, long count) {
+    }
+
+    private static final boolean[] TOKEN_BYTES = new boolean[256];
+
+    static {
+        for (int b = 0; b < 256; b++) {
+            TOKEN_BYTES[b] = b >= 0x80 || b == '_' || (b >= '0' && b <= '9') || (b >= 'a' && b <= 'z')
+                    || (b >= 'A' && b <= 'Z');
+        }
+    }
+
+    private int minLength = 1;
+    private boolean ignoreCase;
+
+    /**
+     * Skip tokens shorter than this many bytes, they are not counted at all.
+     */
+    public TokenStatistics setMinLength(int minLength) {
+        if (minLength < 1) {
+            throw new IllegalArgumentException("minLength must be at least 1, was " + minLength);
+        }
+        this.minLength = minLength;
+        return this;
+    }
+
+    public TokenStatistics setIgnoreCase(boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+        return this;
+    }
+
+    public Result count(Path file) throws IOException {
+        return count(new ChunkedLineSource(file));
+    }
+
+    /**
+     * Counts the tokens of all chunks of the source, in parallel unless the source is GZIP compressed.
+     */
+    public Result count(ChunkedLineSource source) throws IOException {
+        try (Stream<ChunkedLineSource.Chunk> chunks = source.chunks()) {
+            return new Result(chunks.collect(() -> new TokenTable(ignoreCase),
+                    (table, chunk) -> table.tokenize(chunk.buffer(), minLength), TokenTable::merge));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * The counted tokens. Reading it from several threads is fine, it isn't changed any more.
+     */
+    public static final class Result {
+
+        private final TokenTable table;
+
+        private Result(TokenTable table) {
+            this.table = table;
+        }
+
+        /**
+         * The number of tokens in the file, repeats included.
+         */
+        public long getTotalCount() {
+            return table.total;
+        }
+
+        public int getDistinctCount() {
+            return table.size;
+        }
+
+        /**
+         * How often the token occurs, 0 if it doesn't. The token is compared by its UTF-8 bytes.
+         */
+        public long getCount(String token) {
+            byte[] bytes = token.getBytes(StandardCharsets.UTF_8);
+            return table.count(bytes, bytes.length);
+        }
+
+        /**
+         * The n most frequent tokens, most frequent first. Ties are in no particular order.
+         */
+        public List<TokenCount> top(int n) {
+            if (n <= 0) {
+                return List.of();
+            }
+            PriorityQueue<Integer> heap = new PriorityQueue<>(n + 1, Comparator.comparingLong(e -> table.counts[e]));
+            for (int e = 0; e < table.size; e++) {
+                if (heap.size() < n) {
+                    heap.add(e);
+                } else if (table.counts[e] > table.counts[heap.peek()]) {
+                    heap.poll();
+                    heap.add(e);
+                }
+            }
+            List<TokenCount> top = new ArrayList<>(heap.size());
+            while (!heap.isEmpty()) {
+                top.add(table.tokenCount(heap.poll()));
+            }
+            Collections.reverse(top);
+            return top;
+        }
+
+        /**
+         * All distinct tokens with their counts, in no particular order. A String is created for each.
+         */
+        public Stream<TokenCount> tokens() {
+            return IntStream.range(0, table.size).mapToObj(table::tokenCount);
+        }
+    }
+
+    /**
+     * Open addressing hash table from token bytes to count, with linear probing. The bytes of all distinct tokens are
+     * appended to one arena, an entry is its offset and length in the arena, its hash and its count. The slots only
+     * hold entry numbers, so growing the table only rehashes ints and doesn't move the tokens.
+     */
+    static final class TokenTable {
+
+        private final boolean ignoreCase;
+        private int[] slots = new int[1 << 12]; // entry + 1, 0 is empty
+        private int[] hashes = new int[1 << 11];
+        private int[] offsets = new int[1 << 11];
+        private int[] lengths = new int[1 << 11];
+        private long[] counts = new long[1 << 11];
+        private byte[] arena = new byte[1 << 16];
+        private int arenaSize;
+        private byte[] scratch = new byte[64];
+        private int size;
+        private long total;
+
+        TokenTable(boolean ignoreCase) {
+            this.ignoreCase = ignoreCase;
+        }
+
+        /**
+         * Counts every token of the chunk. The token is copied (and folded to lower case) into the scratch array
+         * while its hash is computed; only a new token is copied again, into the arena.
+         */
+        void tokenize(ByteBuffer chunk, int minLength) {
+            int limit = chunk.limit();
+            int i = 0;
+            while (i < limit) {
+                int b = chunk.get(i) & 0xFF;
+                if (!TOKEN_BYTES[b]) {
+                    i++;
+                    continue;
+                }
+                int length = 0;
+                int hash = 0;
+                do {
+                    if (ignoreCase && b >= 'A' && b <= 'Z') {
+                        b |= 0x20;
+                    }
+                    if (length == scratch.length) {
+                        scratch = Arrays.copyOf(scratch, length * 2);
+                    }
+                    scratch[length++] = (byte) b;
+                    hash = hash * 31 + b;
+                    i++;
+                } while (i < limit && TOKEN_BYTES[b = chunk.get(i) & 0xFF]);
+                if (length >= minLength) {
+                    add(scratch, 0, length, mix(hash), 1);
+                }
+            }
+        }
+
+        /**
+         * Adds the counts of the other table to this one.
+         */
+        void merge(TokenTable other) {
+            for (int e = 0; e < other.size; e++) {
+                add(other.arena, other.offsets[e], other.lengths[e], other.hashes[e], other.counts[e]);
+            }
+        }
+
+        long count(byte[] token, int length) {
+            byte[] key = token;
+            int hash = 0;
+            if (ignoreCase) {
+                key = new byte[length];
+            }
+            for (int i = 0; i < length; i++) {
+                int b = token[i] & 0xFF;
+                if (ignoreCase) {
+                    key[i] = (byte) (b >= 'A' && b <= 'Z' ? b | 0x20 : b);
+                    b = key[i] & 0xFF;
+                }
+                hash = hash * 31 + b;
+            }
+            int e = find(key, 0, length, mix(hash));
+            return e < 0 ? 0 : counts[e];
+        }
+
+        /**
+         * The distinct tokens, in no particular order.
+         */
+        String[] tokens() {
+            String[] tokens = new String[size];
+            for (int e = 0; e < size; e++) {
+                tokens[e] = new String(arena, offsets[e], lengths[e], StandardCharsets.UTF_8);
+            }
+            return tokens;
+        }
+
+        private TokenCount tokenCount(int entry) {
+            return new TokenCount(new String(arena, offsets[entry], lengths[entry], StandardCharsets.UTF_8),
+                    counts[entry]);
+        }
+
+        private void add(byte[] token, int offset, int length, int hash, long count) {
+            total += count;
+            int mask = slots.length - 1;
+            int slot = hash & mask;
+            int entry;
+            while ((entry = slots[slot] - 1) >= 0) {
+                if (hashes[entry] == hash && equals(entry, token, offset, length)) {
+                    counts[entry] += count;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (size == counts.length) {
+                int capacity = size * 2;
+                hashes = Arrays.copyOf(hashes, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+            }
+            if (arenaSize + length > arena.length) {
+                long capacity = Math.max((long) arena.length * 2, (long) arenaSize + length);
+                if (capacity > Integer.MAX_VALUE - 8) {
+                    throw new IllegalStateException("More than 2 GB of distinct tokens");
+                }
+                arena = Arrays.copyOf(arena, (int) capacity);
+            }
+            System.arraycopy(token, offset, arena, arenaSize, length);
+            hashes[size] = hash;
+            offsets[size] = arenaSize;
+            lengths[size] = length;
+            counts[size] = count;
+            arenaSize += length;
+            slots[slot] = ++size;
+            if (size * 2 > slots.length) {
+                rehash();
+            }
+        }
+
+        private int find(byte[] token, int offset, int length, int hash) {
+            int mask = slots.length - 1;
+            int slot = hash & mask;
+            int entry;
+            while ((entry = slots[slot] - 1) >= 0) {
+                if (hashes[entry] == hash && equals(entry, token, offset, length)) {
+                    return entry;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private boolean equals(int entry, byte[] token, int offset, int length) {
+            return lengths[entry] == length && Arrays.equals(arena, offsets[entry],
+                    offsets[entry] + length, token, offset, offset + length);
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            int mask = slots.length - 1;
+            for (int e = 0; e < size; e++) {
+                int slot = hashes[e] & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = e + 1;
+            }
+        }
+
+        private static int mix(int hash) {
+            hash *= 0x9E3779B1;
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
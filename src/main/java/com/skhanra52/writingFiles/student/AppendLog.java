@@ -0,0 +1,293 @@
+package com.skhanra52.writingFiles.student;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Long-lived, thread safe append log.
+ * <p>
+ * Files.writeString(path, record, APPEND) opens, writes and closes the file for every record. This class keeps one
+ * FileChannel open instead, and lets any number of threads append lines to an in-memory batch. A background flusher
+ * writes the batch with a single channel write when one of these happens:
+ * <ul>
+ *     <li>the batch reaches maxBatchBytes,</li>
+ *     <li>maxDelay has passed since the last flush,</li>
+ *     <li>a caller asks for it with {@link #sync()}, or the log is closed.</li>
+ * </ul>
+ * While one batch is being written the next one fills up, so appenders only wait when they get more than a few
+ * batches ahead of the disk. With fsync enabled every flush is followed by FileChannel.force(); sync() always forces.
+ */
+public class AppendLog implements Closeable {
+
+    /**
+     * Counters since the log was opened. Flush latency covers the channel write plus force() when it runs.
+     */
+    public record Stats(long records, long bytes, long flushes, long maxBatchRecords, long totalFlushNanos,
+                        long maxFlushNanos) {
+
+        public double averageBatchRecords() {
+            return flushes == 0 ? 0 : (double) records / flushes;
+        }
+
+        public double averageFlushMillis() {
+            return flushes == 0 ? 0 : totalFlushNanos / 1_000_000.0 / flushes;
+        }
+    }
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final FileChannel channel;
+    private final int maxBatchBytes;
+    private final long maxDelayNanos;
+    private final boolean fsync;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushNeeded = lock.newCondition();
+    private final Condition flushDone = lock.newCondition();
+    private final Thread flusher;
+
+    // Guarded by lock
+    private byte[] pending = new byte[8192];
+    private int pendingBytes;
+    private int pendingRecords;
+    private long appendedRecords;
+    private long flushedRecords;
+    private long syncRequests;
+    private long syncsCompleted;
+    private boolean closed;
+    private IOException failure;
+    private long flushes;
+    private long bytesFlushed;
+    private long maxBatchRecords;
+    private long totalFlushNanos;
+    private long maxFlushNanos;
+
+    /**
+     * Opens the log with a 64 KB batch, a 10 ms flush interval and no fsync.
+     */
+    public AppendLog(Path path) throws IOException {
+        this(path, 64 * 1024, Duration.ofMillis(10), false);
+    }
+
+    /**
+     * Opens (or creates) the file for appending.
+     * @param maxBatchBytes a flush starts as soon as the pending batch holds this many bytes.
+     * @param maxDelay the longest time an appended record waits before it is written.
+     * @param fsync if true every flush is forced to the storage device before appenders are told it is done.
+     */
+    public AppendLog(Path path, int maxBatchBytes, Duration maxDelay, boolean fsync) throws IOException {
+        if (maxBatchBytes < 1) {
+            throw new IllegalArgumentException("maxBatchBytes must be positive, was " + maxBatchBytes);
+        }
+        if (maxDelay.isNegative() || maxDelay.isZero()) {
+            throw new IllegalArgumentException("maxDelay must be positive, was " + maxDelay);
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.fsync = fsync;
+        this.flusher = new Thread(this::runFlusher, "append-log-flusher " + path.getFileName());
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Appends the record followed by the line separator. Returns once the record is part of a batch, which is
+     * not the same as being on disk, use {@link #sync()} for that.
+     */
+    public void append(CharSequence record) throws IOException {
+        append(record.toString().getBytes(StandardCharsets.UTF_8), true);
+    }
+
+    /**
+     * Appends the bytes as they are, without a line separator.
+     */
+    public void append(byte[] bytes) throws IOException {
+        append(bytes, false);
+    }
+
+    private void append(byte[] bytes, boolean newLine) throws IOException {
+        int length = bytes.length + (newLine ? LINE_SEPARATOR.length : 0);
+        lock.lock();
+        try {
+            checkOpen();
+            // back pressure: don't let the appenders run more than a few batches ahead of the disk
+            while (pendingBytes > 0 && pendingBytes + length > 4L * maxBatchBytes) {
+                flushNeeded.signal();
+                flushDone.awaitUninterruptibly();
+                checkOpen();
+            }
+            ensureCapacity(pendingBytes + length);
+            System.arraycopy(bytes, 0, pending, pendingBytes, bytes.length);
+            pendingBytes += bytes.length;
+            if (newLine) {
+                System.arraycopy(LINE_SEPARATOR, 0, pending, pendingBytes, LINE_SEPARATOR.length);
+                pendingBytes += LINE_SEPARATOR.length;
+            }
+            pendingRecords++;
+            appendedRecords++;
+            if (pendingBytes >= maxBatchBytes) {
+                flushNeeded.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until every record appended before this call is written and forced to the storage device.
+     */
+    public void sync() throws IOException {
+        lock.lock();
+        try {
+            checkOpen();
+            long request = ++syncRequests;
+            flushNeeded.signal();
+            while (syncsCompleted < request) {
+                flushDone.awaitUninterruptibly();
+                if (failure != null) {
+                    throw new IOException("Append log flush failed", failure);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Stats getStats() {
+        lock.lock();
+        try {
+            return new Stats(flushedRecords, bytesFlushed, flushes, maxBatchRecords, totalFlushNanos, maxFlushNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes whatever is pending, stops the flusher and closes the channel.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            flushNeeded.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing the append log");
+        } finally {
+            channel.close();
+        }
+        if (failure != null) {
+            throw new IOException("Append log flush failed", failure);
+        }
+    }
+
+    private void runFlusher() {
+        byte[] spare = new byte[pending.length];
+        while (true) {
+            int batchBytes;
+            int batchRecords;
+            long batchEnd;
+            long batchSyncs;
+            boolean force;
+            boolean last;
+            lock.lock();
+            try {
+                if (pendingBytes < maxBatchBytes && syncsCompleted == syncRequests && !closed) {
+                    try {
+                        flushNeeded.awaitNanos(maxDelayNanos);
+                    } catch (InterruptedException e) {
+                        // only close() stops the flusher, an interrupt just flushes early
+                    }
+                }
+                // swap the buffers, appenders keep filling the other one while this batch is written
+                byte[] batch = pending;
+                pending = spare.length >= batch.length ? spare : new byte[batch.length];
+                spare = batch;
+                batchBytes = pendingBytes;
+                batchRecords = pendingRecords;
+                batchEnd = appendedRecords;
+                pendingBytes = 0;
+                pendingRecords = 0;
+                batchSyncs = syncRequests;
+                force = batchSyncs > syncsCompleted || (fsync && batchBytes > 0);
+                last = closed;
+            } finally {
+                lock.unlock();
+            }
+
+            long start = System.nanoTime();
+            IOException error = null;
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(spare, 0, batchBytes);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                if (force) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+            long elapsed = System.nanoTime() - start;
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    failure = error;
+                } else if (batchBytes > 0) {
+                    flushedRecords = batchEnd;
+                    flushes++;
+                    bytesFlushed += batchBytes;
+                    maxBatchRecords = Math.max(maxBatchRecords, batchRecords);
+                    totalFlushNanos += elapsed;
+                    maxFlushNanos = Math.max(maxFlushNanos, elapsed);
+                }
+                if (error == null) {
+                    syncsCompleted = batchSyncs;
+                }
+                flushDone.signalAll();
+                if (error != null || (last && pendingBytes == 0)) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (failure != null) {
+            throw new IOException("Append log flush failed", failure);
+        }
+        if (closed) {
+            throw new IOException("Append log is closed");
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(capacity, pending.length * 2));
+        }
+    }
+}
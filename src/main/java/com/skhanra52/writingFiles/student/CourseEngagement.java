@@ -23,6 +23,22 @@ public class CourseEngagement {
         this.engagementType = engagementType;
     }
 
+    // Restores an engagement with its recorded activity, used by the readers that load students back from a file.
+    CourseEngagement(String courseCode, String engagementType, int enrollmentMonth, int enrollmentYear,
+                     int lastLecture, int lastActiveMonth, int lastActiveYear) {
+        this.courseCode = courseCode;
+        this.engagementType = engagementType;
+        this.enrollmentMonth = enrollmentMonth;
+        this.enrollmentYear = enrollmentYear;
+        this.lastLecture = lastLecture;
+        this.lastActiveMonth = lastActiveMonth;
+        this.lastActiveYear = lastActiveYear;
+    }
+
+    public String getCourseCode() {
+        return courseCode;
+    }
+
     public String getEngagementType() {
         return engagementType;
     }
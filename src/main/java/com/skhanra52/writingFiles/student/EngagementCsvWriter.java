@@ -0,0 +1,138 @@
+package com.skhanra52.writingFiles.student;
+
+import com.skhanra52.compression.Compression;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Month;
+import java.util.stream.Stream;
+
+/**
+ * Streaming writer for the student engagement CSV.
+ * <p>
+ * It writes exactly the rows {@link Student#getEngagementRecords()} produces (one per course engagement, followed by
+ * the line separator as Files.write() does), but each field is copied from the Student/CourseEngagement accessors
+ * straight into a reusable byte buffer over the channel. No per-row String is built, and
+ * {@link #writeAll(Stream)} consumes the students one by one, so the export never holds a list of rows in memory.
+ */
+public class EngagementCsvWriter implements Closeable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    // CourseEngagement.toString() prints Month.of(lastActiveMonth), so the month names are encoded once up front.
+    private static final byte[][] MONTH_NAMES = new byte[12][];
+
+    static {
+        for (Month month : Month.values()) {
+            MONTH_NAMES[month.ordinal()] = month.name().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private final ChannelByteWriter out;
+    private long rowCount;
+
+    /**
+     * Creates (or truncates) the file at the given path and writes to it through a FileChannel. A path ending in
+     * ".gz" or ".zblk" is compressed, see {@link Compression#forPath(Path)}.
+     */
+    public EngagementCsvWriter(Path path) throws IOException {
+        this(path, Compression.forPath(path));
+    }
+
+    /**
+     * Creates (or truncates) the file at the given path and writes to it with the given compression.
+     */
+    public EngagementCsvWriter(Path path, Compression compression) throws IOException {
+        this(compression.newWritableChannel(path), DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Writes to an already opened channel, which is closed together with this writer.
+     */
+    public EngagementCsvWriter(WritableByteChannel channel, int bufferSize) {
+        out = new ChannelByteWriter(channel, bufferSize);
+    }
+
+    /**
+     * Writes the header as given, adding the line separator only when the header does not already end a line.
+     */
+    public void writeHeader(String header) throws IOException {
+        out.write(header);
+        if (!header.endsWith("\n")) {
+            out.newLine();
+        }
+    }
+
+    /**
+     * Writes one row per course engagement of the student.
+     */
+    public void write(Student student) throws IOException {
+        for (CourseEngagement engagement : student.getEngagements()) {
+            // Student id and demographics, same fields and order as StudentDemographics.toString()
+            out.write(student.getStudentId());
+            out.write((byte) ',');
+            out.write(student.getCountry());
+            out.write((byte) ',');
+            out.write(student.getEnrollmentMonth());
+            out.write((byte) ',');
+            out.write(student.getEnrollmentYear());
+            out.write((byte) ',');
+            out.write(student.getEnrollmentAge());
+            out.write((byte) ',');
+            out.write(student.getGender());
+            out.write((byte) ',');
+            out.write(student.hasExperience());
+            out.write((byte) ',');
+            // Engagement, same fields and order as CourseEngagement.toString()
+            out.write(engagement.getCourseCode());
+            out.write((byte) ',');
+            out.write(MONTH_NAMES[engagement.getLastActiveMonth() - 1]);
+            out.write((byte) ',');
+            out.write(engagement.getLastActiveYear());
+            out.write((byte) ',');
+            out.write(engagement.getEngagementType());
+            out.newLine();
+            rowCount++;
+        }
+    }
+
+    /**
+     * Writes every student of the stream as it is pulled, and returns the number of rows written.
+     */
+    public long writeAll(Stream<Student> students) throws IOException {
+        long before = rowCount;
+        try {
+            students.forEachOrdered(student -> {
+                try {
+                    write(student);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return rowCount - before;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public long getBytesWritten() {
+        return out.getBytesWritten();
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
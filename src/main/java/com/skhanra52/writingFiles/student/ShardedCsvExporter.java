@@ -0,0 +1,142 @@
+package com.skhanra52.writingFiles.student;
+
+import com.skhanra52.compression.BlockCompressedWriter;
+import com.skhanra52.compression.Compression;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parallel version of the engagement CSV export.
+ * <p>
+ * The students are formatted on N worker threads, each one writing its own shard file with an
+ * {@link EngagementCsvWriter}. The shards are then concatenated into the target with FileChannel.transferTo(), which
+ * lets the OS copy the bytes without bringing them back into the JVM.
+ * <ul>
+ *     <li>ordered: every worker gets one contiguous slice of the list, so the concatenated output is byte for byte
+ *     what a single EngagementCsvWriter produces (rows stay in studentId order).</li>
+ *     <li>relaxed: workers pull small batches from a shared cursor, so a slow worker never holds the others up.
+ *     Rows of a batch stay together, but the batches end up in whatever order the workers took them.</li>
+ * </ul>
+ * A target ending in ".gz" or ".zblk" is compressed, each worker compressing its own shard. GZIP shards are
+ * concatenated as they are (a file of several GZIP members is read as one stream by gzip and GZIPInputStream),
+ * block compressed shards are merged with {@link BlockCompressedWriter#concatenate(List, Path)}.
+ */
+public class ShardedCsvExporter {
+
+    private static final int RELAXED_BATCH_SIZE = 1024;
+
+    private final int workers;
+    private final boolean ordered;
+
+    public ShardedCsvExporter(boolean ordered) {
+        this(Runtime.getRuntime().availableProcessors(), ordered);
+    }
+
+    public ShardedCsvExporter(int workers, boolean ordered) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers must be at least 1, was " + workers);
+        }
+        this.workers = workers;
+        this.ordered = ordered;
+    }
+
+    /**
+     * Writes the header and one row per course engagement of every student to the target, replacing it.
+     * @return the number of rows written.
+     */
+    public long export(List<Student> students, String header, Path target) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Compression compression = Compression.forPath(target);
+        List<Path> shards = new ArrayList<>(workers);
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            AtomicInteger cursor = new AtomicInteger();
+            List<Callable<Long>> tasks = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++) {
+                Path shard = Files.createTempFile(directory, target.getFileName() + ".shard" + i + "-", ".tmp");
+                shards.add(shard);
+                int shardIndex = i;
+                tasks.add(() -> writeShard(students, shardIndex, cursor, shard, compression,
+                        shardIndex == 0 ? header : null));
+            }
+
+            long rows = 0;
+            for (Future<Long> result : executor.invokeAll(tasks)) {
+                rows += result.get();
+            }
+            if (compression == Compression.BLOCK) {
+                BlockCompressedWriter.concatenate(shards, target);
+            } else {
+                concatenate(shards, target);
+            }
+            return rows;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export to " + target + " was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+            for (Path shard : shards) {
+                Files.deleteIfExists(shard);
+            }
+        }
+    }
+
+    private long writeShard(List<Student> students, int shardIndex, AtomicInteger cursor, Path shard,
+                            Compression compression, String header) throws IOException {
+        try (EngagementCsvWriter writer = new EngagementCsvWriter(shard, compression)) {
+            if (header != null) {
+                writer.writeHeader(header);
+            }
+            if (ordered) {
+                int size = students.size();
+                int from = (int) ((long) size * shardIndex / workers);
+                int to = (int) ((long) size * (shardIndex + 1) / workers);
+                writer.writeAll(students.subList(from, to).stream());
+            } else {
+                int from;
+                while ((from = cursor.getAndAdd(RELAXED_BATCH_SIZE)) < students.size()) {
+                    int to = Math.min(from + RELAXED_BATCH_SIZE, students.size());
+                    writer.writeAll(students.subList(from, to).stream());
+                }
+            }
+            return writer.getRowCount();
+        }
+    }
+
+    private static void concatenate(List<Path> shards, Path target) throws IOException {
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Path shard : shards) {
+                try (FileChannel in = FileChannel.open(shard, StandardOpenOption.READ)) {
+                    long size = in.size();
+                    long position = 0;
+                    while (position < size) {
+                        long copied = in.transferTo(position, size - position, out);
+                        if (copied == 0 && in.size() <= position) {
+                            throw new IOException(shard + " was truncated to " + in.size()
+                                    + " bytes while it was copied");
+                        }
+                        position += copied;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.skhanra52.writingFiles.student;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Dictionary encoding for the small sets of repeated strings in the student data (country codes, genders, course
+ * codes, engagement types). Every distinct value gets a dense int id, starting at 0.
+ * <p>
+ * Lookups take any CharSequence and compare it character by character with the stored values, so a parser can
+ * encode a field it has not turned into a String yet. Only the first occurrence of each value is copied.
+ */
+final class StringDictionary {
+
+    private String[] values = new String[16];
+    private int[] table = new int[32]; // open addressing, holds id + 1, 0 means empty
+    private int size;
+
+    /**
+     * Id of the value, adding it to the dictionary when it is not there yet.
+     */
+    int encode(CharSequence value) {
+        int hash = hash(value);
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != 0) {
+            int id = table[slot] - 1;
+            if (contentEquals(values[id], value)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size] = value.toString();
+        table[slot] = ++size;
+        if (size * 2 > table.length) {
+            rehash();
+        }
+        return size - 1;
+    }
+
+    /**
+     * Id of the value, or -1 when it is not in the dictionary.
+     */
+    int find(CharSequence value) {
+        int mask = table.length - 1;
+        int slot = hash(value) & mask;
+        while (table[slot] != 0) {
+            int id = table[slot] - 1;
+            if (contentEquals(values[id], value)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    String decode(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("No dictionary entry " + id);
+        }
+        return values[id];
+    }
+
+    int size() {
+        return size;
+    }
+
+    List<String> values() {
+        return List.of(Arrays.copyOf(values, size));
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hash(values[id]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+    }
+
+    // Same as String.hashCode(), spread so that the low bits used for the slot depend on all characters
+    private static int hash(CharSequence value) {
+        int h = 0;
+        for (int i = 0; i < value.length(); i++) {
+            h = 31 * h + value.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean contentEquals(String stored, CharSequence value) {
+        return stored.length() == value.length() && stored.contentEquals(value);
+    }
+}
@@ -0,0 +1,449 @@
+package com.skhanra52.writingFiles.student;
+
+import com.skhanra52.readinFiles.ChunkedLineSource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Columnar, in-memory store for a large student population.
+ * <p>
+ * A Student object carries a demographics record, a course list and a HashMap of engagements, about a dozen objects
+ * per student. Here every field is one slot of a primitive array instead: ids are longs, months and years ints, the
+ * age a byte, and country, gender, course code and engagement type are small ids into a {@link StringDictionary}.
+ * The engagements of student i are the range engagementStart[i] to engagementStart[i + 1] of the engagement arrays.
+ * <p>
+ * Students are read through a {@link StudentView} flyweight, which only holds an index into the arrays, and can be
+ * turned back into a full Student with {@link StudentView#toStudent()} when really needed.
+ */
+public class StudentColumnStore {
+
+    private final StringDictionary countries = new StringDictionary();
+    private final StringDictionary genders = new StringDictionary();
+    private final StringDictionary courseCodes = new StringDictionary();
+    private final StringDictionary engagementTypes = new StringDictionary();
+    private String[] courseTitles = new String[8]; // by course code id, null while the title is unknown
+
+    // student columns
+    private int size;
+    private long[] studentIds;
+    private short[] countryIds;
+    private int[] enrolledMonths;
+    private int[] enrolledYears;
+    private byte[] ages;
+    private byte[] genderIds;
+    private boolean[] experienced;
+    private int[] engagementStart; // size + 1 entries
+
+    // engagement columns
+    private int engagementCount;
+    private short[] courseIds;
+    private short[] typeIds;
+    private int[] engagementMonths;
+    private int[] engagementYears;
+    private short[] lastLectures;
+    private int[] lastActiveMonths;
+    private int[] lastActiveYears;
+
+    public StudentColumnStore() {
+        this(1024);
+    }
+
+    public StudentColumnStore(int expectedStudents) {
+        int capacity = Math.max(expectedStudents, 16);
+        studentIds = new long[capacity];
+        countryIds = new short[capacity];
+        enrolledMonths = new int[capacity];
+        enrolledYears = new int[capacity];
+        ages = new byte[capacity];
+        genderIds = new byte[capacity];
+        experienced = new boolean[capacity];
+        engagementStart = new int[capacity + 1];
+        int engagementCapacity = capacity * 2;
+        courseIds = new short[engagementCapacity];
+        typeIds = new short[engagementCapacity];
+        engagementMonths = new int[engagementCapacity];
+        engagementYears = new int[engagementCapacity];
+        lastLectures = new short[engagementCapacity];
+        lastActiveMonths = new int[engagementCapacity];
+        lastActiveYears = new int[engagementCapacity];
+    }
+
+    /**
+     * Loads the rows written by {@link EngagementCsvWriter} (or Files.write() of getEngagementRecords()).
+     * Consecutive rows with the same student id belong to one student; lines that don't start with a digit, such
+     * as the header, are skipped. The CSV doesn't carry course titles, so those stay unknown.
+     */
+    public static StudentColumnStore loadCsv(Path path) throws IOException {
+        StudentColumnStore store = new StudentColumnStore();
+        CsvRowLoader loader = store.new CsvRowLoader();
+        // the loader appends to the columns, so the chunks are read in order on this thread
+        try (Stream<ChunkedLineSource.Chunk> chunks = new ChunkedLineSource(path).chunks().sequential()) {
+            chunks.forEachOrdered(chunk -> ChunkedLineSource.forEachLine(chunk.buffer(), loader));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        store.continueIds();
+        return store;
+    }
+
+    /**
+     * Loads student-backup.json style files, one student at a time through {@link StudentJsonReader}, without
+     * creating the Student objects.
+     */
+    public static StudentColumnStore loadJson(Path path) throws IOException {
+        StudentColumnStore store = new StudentColumnStore();
+        try (StudentJsonReader reader = new StudentJsonReader(path)) {
+            reader.forEachRecord(store::add);
+        }
+        return store;
+    }
+
+    /**
+     * Students created from now on get ids after the ones loaded.
+     */
+    private void continueIds() {
+        long max = -1;
+        for (int i = 0; i < size; i++) {
+            max = Math.max(max, studentIds[i]);
+        }
+        if (max >= 0) {
+            Student.continueIdsAfter(max);
+        }
+    }
+
+    /**
+     * Copies the student into the columns.
+     */
+    public void add(Student student) {
+        startStudent(student.getStudentId(), student.getCountry(), student.getEnrollmentMonth(),
+                student.getEnrollmentYear(), student.getEnrollmentAge(), student.getGender(),
+                student.hasExperience());
+        for (Course course : student.getCoursesEnrolled()) {
+            setCourseTitle(courseCodes.encode(course.courseCode()), course.title());
+        }
+        for (CourseEngagement engagement : student.getEngagements()) {
+            addEngagement(engagement.getCourseCode(), engagement.getEngagementType(),
+                    engagement.getEnrollmentMonth(), engagement.getEnrollmentYear(), engagement.getLastLecture(),
+                    engagement.getLastActiveMonth(), engagement.getLastActiveYear());
+        }
+    }
+
+    void add(StudentJsonReader.StudentRecord record) {
+        startStudent(record.getStudentId(), record.getCountry(), record.getEnrollmentMonth(),
+                record.getEnrollmentYear(), record.getEnrollmentAge(), record.getGender(), record.hasExperience());
+        for (int i = 0; i < record.getCourseCount(); i++) {
+            setCourseTitle(courseCodes.encode(record.getCourseCode(i)), record.getCourseTitle(i));
+        }
+        for (int i = 0; i < record.getEngagementCount(); i++) {
+            addEngagement(record.getEngagementCourseCode(i), record.getEngagementType(i),
+                    record.getEngagementEnrollmentMonth(i), record.getEngagementEnrollmentYear(i),
+                    record.getLastLecture(i), record.getLastActiveMonth(i), record.getLastActiveYear(i));
+        }
+    }
+
+    public void addAll(Stream<Student> students) {
+        students.forEachOrdered(this::add);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int engagementCount() {
+        return engagementCount;
+    }
+
+    /**
+     * A new flyweight positioned on the first student.
+     */
+    public StudentView view() {
+        return new StudentView();
+    }
+
+    /**
+     * Passes the same view, moved to each student in turn, to the action.
+     */
+    public void forEach(Consumer<? super StudentView> action) {
+        StudentView view = new StudentView();
+        for (int i = 0; i < size; i++) {
+            action.accept(view.moveTo(i));
+        }
+    }
+
+    /**
+     * Every student as a full Student. Each element gets its own view, so the stream may be made parallel.
+     */
+    public Stream<Student> students() {
+        return IntStream.range(0, size).mapToObj(i -> new StudentView().moveTo(i).toStudent());
+    }
+
+    /**
+     * Flyweight view of one student, move it with {@link #moveTo(int)}. Getter names follow Student.
+     */
+    public final class StudentView {
+
+        private int index;
+
+        private StudentView() {
+        }
+
+        public StudentView moveTo(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Student index " + index + ", size " + size);
+            }
+            this.index = index;
+            return this;
+        }
+
+        public int index() {
+            return index;
+        }
+
+        public long getStudentId() {
+            return studentIds[index];
+        }
+
+        public String getCountry() {
+            return countries.decode(countryIds[index]);
+        }
+
+        public int getEnrollmentMonth() {
+            return enrolledMonths[index];
+        }
+
+        public int getEnrollmentYear() {
+            return enrolledYears[index];
+        }
+
+        public int getEnrollmentAge() {
+            return ages[index];
+        }
+
+        public String getGender() {
+            return genders.decode(genderIds[index]);
+        }
+
+        public boolean hasExperience() {
+            return experienced[index];
+        }
+
+        public int getEngagementCount() {
+            return engagementStart[index + 1] - engagementStart[index];
+        }
+
+        public String getCourseCode(int engagement) {
+            return courseCodes.decode(courseIds[slot(engagement)]);
+        }
+
+        public String getEngagementType(int engagement) {
+            return engagementTypes.decode(typeIds[slot(engagement)]);
+        }
+
+        public int getLastLecture(int engagement) {
+            return lastLectures[slot(engagement)];
+        }
+
+        public int getLastActiveMonth(int engagement) {
+            return lastActiveMonths[slot(engagement)];
+        }
+
+        public int getLastActiveYear(int engagement) {
+            return lastActiveYears[slot(engagement)];
+        }
+
+        /**
+         * Builds a regular Student, with the same id and engagement state, from the columns.
+         */
+        public Student toStudent() {
+            int count = getEngagementCount();
+            List<Course> courses = new ArrayList<>(count);
+            List<CourseEngagement> engagements = new ArrayList<>(count);
+            for (int e = 0; e < count; e++) {
+                int slot = slot(e);
+                String code = courseCodes.decode(courseIds[slot]);
+                String title = courseIds[slot] < courseTitles.length ? courseTitles[courseIds[slot]] : null;
+                courses.add(new Course(code, title == null ? code : title));
+                engagements.add(new CourseEngagement(code, engagementTypes.decode(typeIds[slot]),
+                        engagementMonths[slot], engagementYears[slot], lastLectures[slot],
+                        lastActiveMonths[slot], lastActiveYears[slot]));
+            }
+            StudentDemographics demographics = new StudentDemographics(getCountry(), getEnrollmentMonth(),
+                    getEnrollmentYear(), getEnrollmentAge(), getGender(), hasExperience());
+            return new Student(getStudentId(), demographics, courses, engagements);
+        }
+
+        private int slot(int engagement) {
+            if (engagement < 0 || engagement >= getEngagementCount()) {
+                throw new IndexOutOfBoundsException("Engagement " + engagement + " of student " + getStudentId());
+            }
+            return engagementStart[index] + engagement;
+        }
+    }
+
+    int startStudent(long studentId, CharSequence country, int month, int year, int age, CharSequence gender,
+                     boolean hasExperience) {
+        if (age < 0 || age > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Age " + age + " of student " + studentId + " does not fit a byte");
+        }
+        if (size == studentIds.length) {
+            growStudents();
+        }
+        int index = size++;
+        studentIds[index] = studentId;
+        countryIds[index] = toShort(countries.encode(country), "countries");
+        enrolledMonths[index] = month;
+        enrolledYears[index] = year;
+        ages[index] = (byte) age;
+        genderIds[index] = toByte(genders.encode(gender), "genders");
+        experienced[index] = hasExperience;
+        engagementStart[index] = engagementCount;
+        engagementStart[index + 1] = engagementCount;
+        return index;
+    }
+
+    void addEngagement(CharSequence courseCode, CharSequence engagementType, int enrollmentMonth, int enrollmentYear,
+                       int lastLecture, int lastActiveMonth, int lastActiveYear) {
+        if (engagementCount == courseIds.length) {
+            growEngagements();
+        }
+        int slot = engagementCount++;
+        courseIds[slot] = toShort(courseCodes.encode(courseCode), "course codes");
+        typeIds[slot] = toShort(engagementTypes.encode(engagementType), "engagement types");
+        engagementMonths[slot] = enrollmentMonth;
+        engagementYears[slot] = enrollmentYear;
+        lastLectures[slot] = (short) lastLecture;
+        lastActiveMonths[slot] = lastActiveMonth;
+        lastActiveYears[slot] = lastActiveYear;
+        engagementStart[size] = engagementCount;
+    }
+
+    void setCourseTitle(int courseId, String title) {
+        if (courseId >= courseTitles.length) {
+            courseTitles = Arrays.copyOf(courseTitles, Math.max(courseId + 1, courseTitles.length * 2));
+        }
+        courseTitles[courseId] = title;
+    }
+
+    private void growStudents() {
+        int capacity = studentIds.length * 2;
+        studentIds = Arrays.copyOf(studentIds, capacity);
+        countryIds = Arrays.copyOf(countryIds, capacity);
+        enrolledMonths = Arrays.copyOf(enrolledMonths, capacity);
+        enrolledYears = Arrays.copyOf(enrolledYears, capacity);
+        ages = Arrays.copyOf(ages, capacity);
+        genderIds = Arrays.copyOf(genderIds, capacity);
+        experienced = Arrays.copyOf(experienced, capacity);
+        engagementStart = Arrays.copyOf(engagementStart, capacity + 1);
+    }
+
+    private void growEngagements() {
+        int capacity = courseIds.length * 2;
+        courseIds = Arrays.copyOf(courseIds, capacity);
+        typeIds = Arrays.copyOf(typeIds, capacity);
+        engagementMonths = Arrays.copyOf(engagementMonths, capacity);
+        engagementYears = Arrays.copyOf(engagementYears, capacity);
+        lastLectures = Arrays.copyOf(lastLectures, capacity);
+        lastActiveMonths = Arrays.copyOf(lastActiveMonths, capacity);
+        lastActiveYears = Arrays.copyOf(lastActiveYears, capacity);
+    }
+
+    private static byte toByte(int id, String dictionary) {
+        if (id > Byte.MAX_VALUE) {
+            throw new IllegalStateException("Too many distinct " + dictionary);
+        }
+        return (byte) id;
+    }
+
+    private static short toShort(int id, String dictionary) {
+        if (id > Short.MAX_VALUE) {
+            throw new IllegalStateException("Too many distinct " + dictionary);
+        }
+        return (short) id;
+    }
+
+    /**
+     * Parses one CSV row at a time, field by field, straight from the line view.
+     */
+    private final class CsvRowLoader implements Consumer<CharSequence> {
+
+        private static final int FIELDS = 11;
+        private final int[] fieldStart = new int[FIELDS];
+        private final int[] fieldEnd = new int[FIELDS];
+        private boolean hasCurrent;
+        private long currentId;
+
+        @Override
+        public void accept(CharSequence line) {
+            if (line.length() == 0 || !Character.isDigit(line.charAt(0))) {
+                return;
+            }
+            int field = 0;
+            fieldStart[0] = 0;
+            for (int i = 0; i < line.length() && field < FIELDS; i++) {
+                if (line.charAt(i) == ',') {
+                    fieldEnd[field] = i;
+                    if (++field < FIELDS) {
+                        fieldStart[field] = i + 1;
+                    }
+                }
+            }
+            if (field < FIELDS) {
+                fieldEnd[field++] = line.length();
+            }
+            if (field != FIELDS) {
+                throw new IllegalArgumentException("Expected " + FIELDS + " fields: " + line);
+            }
+
+            long studentId = number(line, 0);
+            int month = (int) number(line, 2);
+            int year = (int) number(line, 3);
+            if (!hasCurrent || studentId != currentId) {
+                startStudent(studentId, line.subSequence(fieldStart[1], fieldEnd[1]), month, year,
+                        (int) number(line, 4), line.subSequence(fieldStart[5], fieldEnd[5]),
+                        line.charAt(fieldStart[6]) == 't');
+                hasCurrent = true;
+                currentId = studentId;
+            }
+            CharSequence type = line.subSequence(fieldStart[10], fieldEnd[10]);
+            int lastLecture = 0;
+            if (type.length() > 8 && type.charAt(0) == 'L') { // "Lecture 12", anything else is the enrollment
+                for (int i = 8; i < type.length() && Character.isDigit(type.charAt(i)); i++) {
+                    lastLecture = lastLecture * 10 + (type.charAt(i) - '0');
+                }
+            }
+            addEngagement(line.subSequence(fieldStart[7], fieldEnd[7]), type, month, year, lastLecture,
+                    month(line, 8), (int) number(line, 9));
+        }
+
+        private long number(CharSequence line, int field) {
+            long value = 0;
+            for (int i = fieldStart[field]; i < fieldEnd[field]; i++) {
+                char c = line.charAt(i);
+                if (c < '0' || c > '9') {
+                    throw new NumberFormatException("Field " + field + " is not a number: " + line);
+                }
+                value = value * 10 + (c - '0');
+            }
+            return value;
+        }
+
+        private int month(CharSequence line, int field) {
+            CharSequence value = line.subSequence(fieldStart[field], fieldEnd[field]);
+            for (Month month : Month.values()) {
+                if (month.name().contentEquals(value)) {
+                    return month.getValue();
+                }
+            }
+            throw new IllegalArgumentException("Field " + field + " is not a month: " + line);
+        }
+    }
+}
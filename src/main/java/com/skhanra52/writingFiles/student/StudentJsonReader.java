@@ -0,0 +1,716 @@
+package com.skhanra52.writingFiles.student;
+
+import com.skhanra52.compression.Compression;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Pull style reader for student-backup.json and files/Data/students-activity.json.
+ * <p>
+ * Those files are one big JSON array of student objects with nested "demographics", "coursesEnrolled" and
+ * "engagementMap" members. Instead of parsing the whole tree, this reader pulls one student at a time from the
+ * channel through a fixed size byte buffer, so memory stays the same whatever the file size:
+ * <ul>
+ *     <li>{@link #next()} returns the next Student, or null after the last one.</li>
+ *     <li>{@link #forEachRecord(Consumer)} hands a reused {@link StudentRecord} to a callback, without creating any
+ *     Student, CourseEngagement or list objects.</li>
+ * </ul>
+ * String values are decoded into one reused char buffer and interned through a dictionary, so the country codes,
+ * genders, course codes, titles and engagement types that repeat in every object are only allocated once.
+ * Members with unknown names are skipped. "engagementMap" may be an array of engagements (as written by the
+ * project) or an object keyed by course code.
+ */
+public class StudentJsonReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final StringDictionary strings = new StringDictionary();
+    private char[] text = new char[64];
+    private int textLength;
+    private final CharSequence textView = new TextView();
+    private final StudentRecord record = new StudentRecord();
+    private boolean started;
+    private boolean finished;
+    private long maxStudentId = -1;
+    private long position; // bytes consumed, used in error messages
+
+    /**
+     * Reads the file at the given path, decompressing it if it was written compressed.
+     */
+    public StudentJsonReader(Path path) throws IOException {
+        this(Compression.openReadable(path));
+    }
+
+    /**
+     * Reads from an already opened channel, which is closed together with this reader.
+     */
+    public StudentJsonReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        buffer.flip();
+    }
+
+    /**
+     * @return the next student, or null when the array has ended.
+     */
+    public Student next() throws IOException {
+        return nextRecord() ? record.toStudent() : null;
+    }
+
+    /**
+     * Passes every remaining student to the action as the same, reused record.
+     * @return the number of students read.
+     */
+    public long forEachRecord(Consumer<? super StudentRecord> action) throws IOException {
+        long count = 0;
+        while (nextRecord()) {
+            action.accept(record);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Moves to the next student object and parses it into the reused record.
+     * @return false when the array has ended.
+     */
+    public boolean nextRecord() throws IOException {
+        if (finished) {
+            return false;
+        }
+        if (!started) {
+            expect('[');
+            started = true;
+            if (peek() == ']') {
+                expect(']');
+                finish();
+                return false;
+            }
+        } else {
+            int c = nextToken();
+            if (c == ']') {
+                finish();
+                return false;
+            }
+            if (c != ',') {
+                throw error("Expected ',' or ']' between students");
+            }
+        }
+        readStudent();
+        maxStudentId = Math.max(maxStudentId, record.getStudentId());
+        return true;
+    }
+
+    /**
+     * The array has ended, students created from now on get ids after the ones read.
+     */
+    private void finish() {
+        finished = true;
+        if (maxStudentId >= 0) {
+            Student.continueIdsAfter(maxStudentId);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * One student as parsed from the file. The instance is reused for the next student, so keep only what is
+     * copied out of it (all Strings it returns are interned and safe to keep).
+     */
+    public static final class StudentRecord {
+
+        private long studentId;
+        private String country;
+        private int enrollmentMonth;
+        private int enrollmentYear;
+        private int enrollmentAge;
+        private String gender;
+        private boolean experienced;
+
+        private int courseCount;
+        private String[] courseCodes = new String[4];
+        private String[] courseTitles = new String[4];
+
+        private int engagementCount;
+        private String[] engagementCodes = new String[4];
+        private String[] engagementTypes = new String[4];
+        private int[][] engagementNumbers = new int[4][5];
+
+        private static final int ENROLLMENT_MONTH = 0;
+        private static final int ENROLLMENT_YEAR = 1;
+        private static final int LAST_LECTURE = 2;
+        private static final int LAST_ACTIVE_MONTH = 3;
+        private static final int LAST_ACTIVE_YEAR = 4;
+
+        private StudentRecord() {
+        }
+
+        public long getStudentId() {
+            return studentId;
+        }
+
+        public String getCountry() {
+            return country;
+        }
+
+        public int getEnrollmentMonth() {
+            return enrollmentMonth;
+        }
+
+        public int getEnrollmentYear() {
+            return enrollmentYear;
+        }
+
+        public int getEnrollmentAge() {
+            return enrollmentAge;
+        }
+
+        public String getGender() {
+            return gender;
+        }
+
+        public boolean hasExperience() {
+            return experienced;
+        }
+
+        public int getCourseCount() {
+            return courseCount;
+        }
+
+        public String getCourseCode(int course) {
+            return courseCodes[checkIndex(course, courseCount)];
+        }
+
+        public String getCourseTitle(int course) {
+            return courseTitles[checkIndex(course, courseCount)];
+        }
+
+        public int getEngagementCount() {
+            return engagementCount;
+        }
+
+        public String getEngagementCourseCode(int engagement) {
+            return engagementCodes[checkIndex(engagement, engagementCount)];
+        }
+
+        public String getEngagementType(int engagement) {
+            return engagementTypes[checkIndex(engagement, engagementCount)];
+        }
+
+        public int getEngagementEnrollmentMonth(int engagement) {
+            return engagementNumbers[checkIndex(engagement, engagementCount)][ENROLLMENT_MONTH];
+        }
+
+        public int getEngagementEnrollmentYear(int engagement) {
+            return engagementNumbers[checkIndex(engagement, engagementCount)][ENROLLMENT_YEAR];
+        }
+
+        public int getLastLecture(int engagement) {
+            return engagementNumbers[checkIndex(engagement, engagementCount)][LAST_LECTURE];
+        }
+
+        public int getLastActiveMonth(int engagement) {
+            return engagementNumbers[checkIndex(engagement, engagementCount)][LAST_ACTIVE_MONTH];
+        }
+
+        public int getLastActiveYear(int engagement) {
+            return engagementNumbers[checkIndex(engagement, engagementCount)][LAST_ACTIVE_YEAR];
+        }
+
+        public Student toStudent() {
+            List<Course> courses = new ArrayList<>(courseCount);
+            for (int i = 0; i < courseCount; i++) {
+                courses.add(new Course(courseCodes[i], courseTitles[i]));
+            }
+            List<CourseEngagement> engagements = new ArrayList<>(engagementCount);
+            for (int i = 0; i < engagementCount; i++) {
+                int[] numbers = engagementNumbers[i];
+                engagements.add(new CourseEngagement(engagementCodes[i], engagementTypes[i],
+                        numbers[ENROLLMENT_MONTH], numbers[ENROLLMENT_YEAR], numbers[LAST_LECTURE],
+                        numbers[LAST_ACTIVE_MONTH], numbers[LAST_ACTIVE_YEAR]));
+            }
+            return new Student(studentId, new StudentDemographics(country, enrollmentMonth, enrollmentYear,
+                    enrollmentAge, gender, experienced), courses, engagements);
+        }
+
+        private void clear() {
+            studentId = 0;
+            country = null;
+            gender = null;
+            enrollmentMonth = enrollmentYear = enrollmentAge = 0;
+            experienced = false;
+            courseCount = 0;
+            engagementCount = 0;
+        }
+
+        private int addCourse() {
+            if (courseCount == courseCodes.length) {
+                courseCodes = Arrays.copyOf(courseCodes, courseCount * 2);
+                courseTitles = Arrays.copyOf(courseTitles, courseCount * 2);
+            }
+            courseCodes[courseCount] = null;
+            courseTitles[courseCount] = null;
+            return courseCount++;
+        }
+
+        private int addEngagement() {
+            if (engagementCount == engagementCodes.length) {
+                int capacity = engagementCount * 2;
+                engagementCodes = Arrays.copyOf(engagementCodes, capacity);
+                engagementTypes = Arrays.copyOf(engagementTypes, capacity);
+                engagementNumbers = Arrays.copyOf(engagementNumbers, capacity);
+                for (int i = engagementCount; i < capacity; i++) {
+                    engagementNumbers[i] = new int[5];
+                }
+            }
+            engagementCodes[engagementCount] = null;
+            engagementTypes[engagementCount] = null;
+            Arrays.fill(engagementNumbers[engagementCount], 0);
+            return engagementCount++;
+        }
+
+        private static int checkIndex(int index, int count) {
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException("Index " + index + ", count " + count);
+            }
+            return index;
+        }
+    }
+
+    // ---- student schema ----------------------------------------------------------------------------------------
+
+    private void readStudent() throws IOException {
+        record.clear();
+        expect('{');
+        if (!emptyObject()) {
+            do {
+                readKey();
+                if (keyIs("studentId")) {
+                    record.studentId = readLong();
+                } else if (keyIs("demographics")) {
+                    readDemographics();
+                } else if (keyIs("coursesEnrolled")) {
+                    readCourses();
+                } else if (keyIs("engagementMap")) {
+                    readEngagements();
+                } else {
+                    skipValue();
+                }
+            } while (nextMember());
+        }
+    }
+
+    private void readDemographics() throws IOException {
+        expect('{');
+        if (emptyObject()) {
+            return;
+        }
+        do {
+            readKey();
+            if (keyIs("countryCode")) {
+                record.country = readInternedString();
+            } else if (keyIs("enrolledMonth")) {
+                record.enrollmentMonth = readInt();
+            } else if (keyIs("enrolledYear")) {
+                record.enrollmentYear = readInt();
+            } else if (keyIs("ageAtEnrollment")) {
+                record.enrollmentAge = readInt();
+            } else if (keyIs("gender")) {
+                record.gender = readInternedString();
+            } else if (keyIs("previousProgrammingExperience")) {
+                record.experienced = readBoolean();
+            } else {
+                skipValue();
+            }
+        } while (nextMember());
+    }
+
+    private void readCourses() throws IOException {
+        expect('[');
+        if (emptyArray()) {
+            return;
+        }
+        do {
+            int course = record.addCourse();
+            expect('{');
+            if (emptyObject()) {
+                continue;
+            }
+            do {
+                readKey();
+                if (keyIs("courseCode")) {
+                    record.courseCodes[course] = readInternedString();
+                } else if (keyIs("title")) {
+                    record.courseTitles[course] = readInternedString();
+                } else {
+                    skipValue();
+                }
+            } while (nextMember());
+        } while (nextElement());
+    }
+
+    private void readEngagements() throws IOException {
+        int c = peek();
+        if (c == '[') {
+            expect('[');
+            if (emptyArray()) {
+                return;
+            }
+            do {
+                readEngagement(null);
+            } while (nextElement());
+        } else {
+            // {"JMC": {...}, "PYC": {...}}, the course code is the key
+            expect('{');
+            if (emptyObject()) {
+                return;
+            }
+            do {
+                readKey();
+                readEngagement(internText());
+            } while (nextMember());
+        }
+    }
+
+    private void readEngagement(String courseCode) throws IOException {
+        int engagement = record.addEngagement();
+        record.engagementCodes[engagement] = courseCode;
+        int[] numbers = record.engagementNumbers[engagement];
+        expect('{');
+        if (emptyObject()) {
+            return;
+        }
+        do {
+            readKey();
+            if (keyIs("courseCode")) {
+                record.engagementCodes[engagement] = readInternedString();
+            } else if (keyIs("engagementType")) {
+                record.engagementTypes[engagement] = readInternedString();
+            } else if (keyIs("enrollmentMonth")) {
+                numbers[StudentRecord.ENROLLMENT_MONTH] = readInt();
+            } else if (keyIs("enrollmentYear")) {
+                numbers[StudentRecord.ENROLLMENT_YEAR] = readInt();
+            } else if (keyIs("lastLecture")) {
+                numbers[StudentRecord.LAST_LECTURE] = readInt();
+            } else if (keyIs("lastActiveMonth")) {
+                numbers[StudentRecord.LAST_ACTIVE_MONTH] = readInt();
+            } else if (keyIs("lastActiveYear")) {
+                numbers[StudentRecord.LAST_ACTIVE_YEAR] = readInt();
+            } else {
+                skipValue();
+            }
+        } while (nextMember());
+    }
+
+    // ---- JSON tokens ---------------------------------------------------------------------------------------------
+
+    private boolean emptyObject() throws IOException {
+        if (peek() == '}') {
+            expect('}');
+            return true;
+        }
+        return false;
+    }
+
+    private boolean emptyArray() throws IOException {
+        if (peek() == ']') {
+            expect(']');
+            return true;
+        }
+        return false;
+    }
+
+    private boolean nextMember() throws IOException {
+        int c = nextToken();
+        if (c == ',') {
+            return true;
+        }
+        if (c == '}') {
+            return false;
+        }
+        throw error("Expected ',' or '}'");
+    }
+
+    private boolean nextElement() throws IOException {
+        int c = nextToken();
+        if (c == ',') {
+            return true;
+        }
+        if (c == ']') {
+            return false;
+        }
+        throw error("Expected ',' or ']'");
+    }
+
+    private void readKey() throws IOException {
+        expect('"');
+        readStringContent();
+        expect(':');
+    }
+
+    private boolean keyIs(String key) {
+        if (key.length() != textLength) {
+            return false;
+        }
+        for (int i = 0; i < textLength; i++) {
+            if (key.charAt(i) != text[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String readInternedString() throws IOException {
+        int c = nextToken();
+        if (c == 'n') {
+            expectLiteral("ull");
+            return null;
+        }
+        if (c != '"') {
+            throw error("Expected a string");
+        }
+        readStringContent();
+        return internText();
+    }
+
+    private String internText() {
+        return strings.decode(strings.encode(textView));
+    }
+
+    /**
+     * Decodes the string after the opening quote into the reused text buffer.
+     */
+    private void readStringContent() throws IOException {
+        textLength = 0;
+        while (true) {
+            int b = read();
+            if (b == '"') {
+                return;
+            }
+            if (b == '\\') {
+                int e = read();
+                switch (e) {
+                    case '"', '\\', '/' -> append((char) e);
+                    case 'b' -> append('\b');
+                    case 'f' -> append('\f');
+                    case 'n' -> append('\n');
+                    case 'r' -> append('\r');
+                    case 't' -> append('\t');
+                    case 'u' -> {
+                        int value = 0;
+                        for (int i = 0; i < 4; i++) {
+                            value = (value << 4) | Character.digit(read(), 16);
+                        }
+                        if (value < 0) {
+                            throw error("Invalid \\u escape");
+                        }
+                        append((char) value);
+                    }
+                    default -> throw error("Invalid escape \\" + (char) e);
+                }
+            } else if (b < 0x80) {
+                append((char) b);
+            } else if ((b & 0xE0) == 0xC0) {
+                append((char) (((b & 0x1F) << 6) | (read() & 0x3F)));
+            } else if ((b & 0xF0) == 0xE0) {
+                append((char) (((b & 0x0F) << 12) | ((read() & 0x3F) << 6) | (read() & 0x3F)));
+            } else {
+                int codePoint = ((b & 0x07) << 18) | ((read() & 0x3F) << 12) | ((read() & 0x3F) << 6)
+                        | (read() & 0x3F);
+                append(Character.highSurrogate(codePoint));
+                append(Character.lowSurrogate(codePoint));
+            }
+        }
+    }
+
+    private void append(char c) {
+        if (textLength == text.length) {
+            text = Arrays.copyOf(text, textLength * 2);
+        }
+        text[textLength++] = c;
+    }
+
+    private int readInt() throws IOException {
+        long value = readLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw error("Number out of int range");
+        }
+        return (int) value;
+    }
+
+    private long readLong() throws IOException {
+        int c = nextToken();
+        boolean negative = c == '-';
+        if (negative) {
+            c = read();
+        }
+        if (c < '0' || c > '9') {
+            throw error("Expected a number");
+        }
+        long value = c - '0';
+        while (true) {
+            c = peekRaw();
+            if (c < '0' || c > '9') {
+                break;
+            }
+            read();
+            value = value * 10 + (c - '0');
+        }
+        if (c == '.' || c == 'e' || c == 'E') {
+            throw error("Expected an integer");
+        }
+        return negative ? -value : value;
+    }
+
+    private boolean readBoolean() throws IOException {
+        int c = nextToken();
+        if (c == 't') {
+            expectLiteral("rue");
+            return true;
+        }
+        if (c == 'f') {
+            expectLiteral("alse");
+            return false;
+        }
+        throw error("Expected true or false");
+    }
+
+    private void skipValue() throws IOException {
+        int c = nextToken();
+        switch (c) {
+            case '"' -> readStringContent();
+            case '{', '[' -> {
+                int depth = 1;
+                while (depth > 0) {
+                    int b = read();
+                    if (b == '"') {
+                        readStringContent();
+                    } else if (b == '{' || b == '[') {
+                        depth++;
+                    } else if (b == '}' || b == ']') {
+                        depth--;
+                    }
+                }
+            }
+            case 't' -> expectLiteral("rue");
+            case 'f' -> expectLiteral("alse");
+            case 'n' -> expectLiteral("ull");
+            default -> {
+                if (c != '-' && (c < '0' || c > '9')) {
+                    throw error("Unexpected character '" + (char) c + "'");
+                }
+                while (true) {
+                    int p = peekRaw();
+                    if (p == ',' || p == '}' || p == ']' || p == -1 || Character.isWhitespace(p)) {
+                        break;
+                    }
+                    read();
+                }
+            }
+        }
+    }
+
+    private void expectLiteral(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            if (read() != rest.charAt(i)) {
+                throw error("Invalid literal");
+            }
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        if (nextToken() != expected) {
+            throw error("Expected '" + expected + "'");
+        }
+    }
+
+    /**
+     * Next byte that is not whitespace, without consuming it.
+     */
+    private int peek() throws IOException {
+        int c;
+        while ((c = peekRaw()) == ' ' || c == '\n' || c == '\r' || c == '\t') {
+            read();
+        }
+        return c;
+    }
+
+    /**
+     * Consumes and returns the next byte that is not whitespace.
+     */
+    private int nextToken() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+        return c;
+    }
+
+    private int peekRaw() throws IOException {
+        if (!buffer.hasRemaining() && !fill()) {
+            return -1;
+        }
+        return buffer.get(buffer.position()) & 0xFF;
+    }
+
+    private int read() throws IOException {
+        if (!buffer.hasRemaining() && !fill()) {
+            throw new EOFException("Unexpected end of JSON after " + position + " bytes");
+        }
+        position++;
+        return buffer.get() & 0xFF;
+    }
+
+    private boolean fill() throws IOException {
+        buffer.clear();
+        int n;
+        do {
+            n = channel.read(buffer);
+        } while (n == 0);
+        buffer.flip();
+        return n > 0;
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + " at byte " + position);
+    }
+
+    /**
+     * The decoded characters of the last string, as a CharSequence for the dictionary lookup.
+     */
+    private final class TextView implements CharSequence {
+
+        @Override
+        public int length() {
+            return textLength;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return text[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(text, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(text, 0, textLength);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.skhanra52.writingFiles.student;
+
+import com.skhanra52.compression.Compression;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * Streaming JSON writer for students, in the schema of student-backup.json (the format {@link StudentJsonReader}
+ * reads back).
+ * <p>
+ * Every constant piece of the output (braces, member names, separators) is encoded to bytes once, in the static
+ * fields below, and the numbers are formatted straight into the buffer, so writing a student only copies bytes.
+ * The students are written as they come from the stream into a buffered channel, nothing is collected first.
+ * The opening '[' is written before the first student and the closing ']' on close().
+ */
+public class StudentJsonWriter implements Closeable {
+
+    private static final byte[] ARRAY_START = ascii("[");
+    private static final byte[] ARRAY_END = ascii("]");
+
+    private static final byte[] STUDENT_ID = ascii("{\"studentId\":");
+    private static final byte[] COUNTRY_CODE = ascii(", \"demographics\":{\"countryCode\":");
+    private static final byte[] ENROLLED_MONTH = ascii(", \"enrolledMonth\":");
+    private static final byte[] ENROLLED_YEAR = ascii(", \"enrolledYear\":");
+    private static final byte[] AGE_AT_ENROLLMENT = ascii(", \"ageAtEnrollment\":");
+    private static final byte[] GENDER = ascii(", \"gender\":");
+    private static final byte[] EXPERIENCE = ascii(", \"previousProgrammingExperience\":");
+    private static final byte[] COURSES_ENROLLED = ascii("}, \"coursesEnrolled\":[");
+
+    private static final byte[] COURSE_CODE = ascii("{\"courseCode\":");
+    private static final byte[] TITLE = ascii(", \"title\":");
+
+    private static final byte[] ENGAGEMENT_MAP = ascii("], \"engagementMap\":[");
+    private static final byte[] ENGAGEMENT_TYPE = ascii(", \"engagementType\":");
+    private static final byte[] ENROLLMENT_MONTH = ascii(", \"enrollmentMonth\":");
+    private static final byte[] ENROLLMENT_YEAR = ascii(", \"enrollmentYear\":");
+    private static final byte[] LAST_LECTURE = ascii(", \"lastLecture\":");
+    private static final byte[] LAST_ACTIVE_MONTH = ascii(", \"lastActiveMonth\":");
+    private static final byte[] LAST_ACTIVE_YEAR = ascii(", \"lastActiveYear\":");
+    private static final byte[] STUDENT_END = ascii("]}");
+
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] HEX = ascii("0123456789abcdef");
+
+    private final ChannelByteWriter out;
+    private long count;
+    private boolean closed;
+
+    /**
+     * Creates (or truncates) the file at the given path and writes to it through a FileChannel. A path ending in
+     * ".gz" or ".zblk" is compressed, see {@link Compression#forPath(Path)}.
+     */
+    public StudentJsonWriter(Path path) throws IOException {
+        this(path, Compression.forPath(path));
+    }
+
+    /**
+     * Creates (or truncates) the file at the given path and writes to it with the given compression.
+     */
+    public StudentJsonWriter(Path path, Compression compression) throws IOException {
+        this(compression.newWritableChannel(path), EngagementCsvWriter.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Writes to an already opened channel, which is closed together with this writer.
+     */
+    public StudentJsonWriter(WritableByteChannel channel, int bufferSize) {
+        out = new ChannelByteWriter(channel, bufferSize);
+    }
+
+    public void write(Student student) throws IOException {
+        if (count++ == 0) {
+            out.write(ARRAY_START);
+        } else {
+            out.write((byte) ',');
+            out.newLine(); // one student per line, like the existing backups
+        }
+
+        out.write(STUDENT_ID);
+        out.write(student.getStudentId());
+        out.write(COUNTRY_CODE);
+        writeString(student.getCountry());
+        out.write(ENROLLED_MONTH);
+        out.write(student.getEnrollmentMonth());
+        out.write(ENROLLED_YEAR);
+        out.write(student.getEnrollmentYear());
+        out.write(AGE_AT_ENROLLMENT);
+        out.write(student.getEnrollmentAge());
+        out.write(GENDER);
+        writeString(student.getGender());
+        out.write(EXPERIENCE);
+        out.write(student.hasExperience());
+
+        out.write(COURSES_ENROLLED);
+        boolean first = true;
+        for (Course course : student.getCoursesEnrolled()) {
+            if (!first) {
+                out.write((byte) ',');
+            }
+            first = false;
+            out.write(COURSE_CODE);
+            writeString(course.courseCode());
+            out.write(TITLE);
+            writeString(course.title());
+            out.write((byte) '}');
+        }
+
+        out.write(ENGAGEMENT_MAP);
+        first = true;
+        for (CourseEngagement engagement : student.getEngagements()) {
+            if (!first) {
+                out.write((byte) ',');
+            }
+            first = false;
+            out.write(COURSE_CODE);
+            writeString(engagement.getCourseCode());
+            out.write(ENGAGEMENT_TYPE);
+            writeString(engagement.getEngagementType());
+            out.write(ENROLLMENT_MONTH);
+            out.write(engagement.getEnrollmentMonth());
+            out.write(ENROLLMENT_YEAR);
+            out.write(engagement.getEnrollmentYear());
+            out.write(LAST_LECTURE);
+            out.write(engagement.getLastLecture());
+            out.write(LAST_ACTIVE_MONTH);
+            out.write(engagement.getLastActiveMonth());
+            out.write(LAST_ACTIVE_YEAR);
+            out.write(engagement.getLastActiveYear());
+            out.write((byte) '}');
+        }
+        out.write(STUDENT_END);
+    }
+
+    /**
+     * Writes every student of the stream as it is pulled, and returns how many were written.
+     */
+    public long writeAll(Stream<Student> students) throws IOException {
+        long before = count;
+        try {
+            students.forEachOrdered(student -> {
+                try {
+                    write(student);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return count - before;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getBytesWritten() {
+        return out.getBytesWritten();
+    }
+
+    /**
+     * Ends the array and closes the channel.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (count == 0) {
+                out.write(ARRAY_START);
+            }
+            out.write(ARRAY_END);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            out.write(NULL);
+            return;
+        }
+        out.write((byte) '"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\' || c < 0x20) {
+                if (i > start) {
+                    out.write(value.substring(start, i));
+                }
+                writeEscape(c);
+                start = i + 1;
+            }
+        }
+        if (start == 0) {
+            out.write(value); // the usual case, nothing to escape
+        } else if (start < value.length()) {
+            out.write(value.substring(start));
+        }
+        out.write((byte) '"');
+    }
+
+    private void writeEscape(char c) throws IOException {
+        out.write((byte) '\\');
+        switch (c) {
+            case '"', '\\' -> out.write((byte) c);
+            case '\b' -> out.write((byte) 'b');
+            case '\f' -> out.write((byte) 'f');
+            case '\n' -> out.write((byte) 'n');
+            case '\r' -> out.write((byte) 'r');
+            case '\t' -> out.write((byte) 't');
+            default -> {
+                out.write((byte) 'u');
+                out.write((byte) '0');
+                out.write((byte) '0');
+                out.write(HEX[c >> 4]);
+                out.write(HEX[c & 0xF]);
+            }
+        }
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,72 @@
+package com.skhanra52.writingFiles.student;
+
+/**
+ * Layout of the binary student snapshot written by {@link StudentSnapshotWriter} and read by
+ * {@link StudentSnapshotReader}. All numbers are big-endian (the ByteBuffer default).
+ * <pre>
+ * header       64 bytes   magic, version, counts and the offset of every section
+ * students     32 bytes   per student, in the order they were written
+ * courses       8 bytes   per enrolled course, grouped by student
+ * engagements  16 bytes   per course engagement, grouped by student
+ * dictionary   int count, then per entry an unsigned short length and the UTF-8 bytes
+ * </pre>
+ * Student record: long studentId, int country, int gender, short enrolledYear, byte enrolledMonth,
+ * byte ageAtEnrollment, byte flags (bit 0 = previous experience), byte courseCount, byte engagementCount, one unused
+ * byte, int firstCourse, int firstEngagement. The last two are the offset index into the course and engagement
+ * sections, so the whole student is found from its record without looking at any other student.
+ * <p>
+ * Course record: int courseCode, int title. Engagement record: int courseCode, int engagementType,
+ * short enrollmentYear, byte enrollmentMonth, byte lastActiveMonth, short lastActiveYear, short lastLecture.
+ * Every string is an id into the dictionary, or {@link #NO_STRING} for a null string. The months and the age are
+ * unsigned bytes, the years and the last lecture signed shorts; the writer rejects values that don't fit.
+ */
+final class StudentSnapshotFormat {
+
+    static final int MAGIC = 0x53545553; // "STUS"
+    static final short VERSION = 1;
+
+    static final int HEADER_SIZE = 64;
+    static final int STUDENT_RECORD_SIZE = 32;
+    static final int COURSE_RECORD_SIZE = 8;
+    static final int ENGAGEMENT_RECORD_SIZE = 16;
+
+    // header fields
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int STUDENT_COUNT_OFFSET = 8;
+    static final int COURSE_COUNT_OFFSET = 12;
+    static final int ENGAGEMENT_COUNT_OFFSET = 16;
+    static final int STUDENTS_OFFSET = 24;
+    static final int COURSES_OFFSET = 32;
+    static final int ENGAGEMENTS_OFFSET = 40;
+    static final int DICTIONARY_OFFSET = 48;
+
+    // student record fields
+    static final int STUDENT_ID = 0;
+    static final int COUNTRY = 8;
+    static final int GENDER = 12;
+    static final int ENROLLED_YEAR = 16;
+    static final int ENROLLED_MONTH = 18;
+    static final int AGE = 19;
+    static final int FLAGS = 20;
+    static final int COURSE_COUNT = 21;
+    static final int ENGAGEMENT_COUNT = 22;
+    static final int FIRST_COURSE = 24;
+    static final int FIRST_ENGAGEMENT = 28;
+
+    static final int FLAG_EXPERIENCE = 1;
+
+    static final int NO_STRING = -1;
+
+    // engagement record fields
+    static final int ENGAGEMENT_COURSE = 0;
+    static final int ENGAGEMENT_TYPE = 4;
+    static final int ENROLLMENT_YEAR = 8;
+    static final int ENROLLMENT_MONTH = 10;
+    static final int LAST_ACTIVE_MONTH = 11;
+    static final int LAST_ACTIVE_YEAR = 12;
+    static final int LAST_LECTURE = 14;
+
+    private StudentSnapshotFormat() {
+    }
+}
@@ -0,0 +1,149 @@
+package com.skhanra52.writingFiles.student;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.skhanra52.writingFiles.student.StudentSnapshotFormat.*;
+
+/**
+ * Random access reader for the binary snapshot written by {@link StudentSnapshotWriter}.
+ * <p>
+ * Opening the snapshot reads the header and the string dictionary, and memory maps the student, course and
+ * engagement sections. Student N is then read from its fixed size record at a computed position, together with the
+ * course and engagement records its offsets point to, in O(1) and without parsing any other student.
+ * Each section has to fit one mapping (2 GB, about 67 million students).
+ */
+public class StudentSnapshotReader {
+
+    private final int studentCount;
+    private final MappedByteBuffer students;
+    private final MappedByteBuffer courses;
+    private final MappedByteBuffer engagements;
+    private final String[] dictionary;
+
+    public StudentSnapshotReader(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new IOException(path + " is too short for a student snapshot");
+                }
+            }
+            if (header.getInt(MAGIC_OFFSET) != MAGIC) {
+                throw new IOException(path + " is not a student snapshot");
+            }
+            if (header.getShort(VERSION_OFFSET) != VERSION) {
+                throw new IOException("Unsupported student snapshot version " + header.getShort(VERSION_OFFSET));
+            }
+            studentCount = header.getInt(STUDENT_COUNT_OFFSET);
+            long studentsOffset = header.getLong(STUDENTS_OFFSET);
+            long coursesOffset = header.getLong(COURSES_OFFSET);
+            long engagementsOffset = header.getLong(ENGAGEMENTS_OFFSET);
+            long dictionaryOffset = header.getLong(DICTIONARY_OFFSET);
+
+            students = map(channel, studentsOffset, (long) studentCount * STUDENT_RECORD_SIZE);
+            courses = map(channel, coursesOffset, (long) header.getInt(COURSE_COUNT_OFFSET) * COURSE_RECORD_SIZE);
+            engagements = map(channel, engagementsOffset,
+                    (long) header.getInt(ENGAGEMENT_COUNT_OFFSET) * ENGAGEMENT_RECORD_SIZE);
+
+            MappedByteBuffer strings = map(channel, dictionaryOffset, channel.size() - dictionaryOffset);
+            dictionary = new String[strings.getInt()];
+            for (int id = 0; id < dictionary.length; id++) {
+                byte[] bytes = new byte[strings.getShort() & 0xFFFF];
+                strings.get(bytes);
+                dictionary[id] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+        // students created from now on get ids after the ones in the snapshot
+        long maxStudentId = -1;
+        for (int n = 0; n < studentCount; n++) {
+            maxStudentId = Math.max(maxStudentId, getStudentId(n));
+        }
+        if (maxStudentId >= 0) {
+            Student.continueIdsAfter(maxStudentId);
+        }
+    }
+
+    public int size() {
+        return studentCount;
+    }
+
+    /**
+     * Id of student N, read without building the Student.
+     */
+    public long getStudentId(int n) {
+        return students.getLong(recordOffset(n) + STUDENT_ID);
+    }
+
+    /**
+     * Builds student N (counting from 0, in the order they were written) from its records.
+     */
+    public Student get(int n) {
+        int record = recordOffset(n);
+        int courseCount = students.get(record + COURSE_COUNT) & 0xFF;
+        int firstCourse = students.getInt(record + FIRST_COURSE);
+        List<Course> courseList = new ArrayList<>(courseCount);
+        for (int i = 0; i < courseCount; i++) {
+            int course = (firstCourse + i) * COURSE_RECORD_SIZE;
+            courseList.add(new Course(string(courses.getInt(course)), string(courses.getInt(course + 4))));
+        }
+
+        int engagementCount = students.get(record + ENGAGEMENT_COUNT) & 0xFF;
+        int firstEngagement = students.getInt(record + FIRST_ENGAGEMENT);
+        List<CourseEngagement> engagementList = new ArrayList<>(engagementCount);
+        for (int i = 0; i < engagementCount; i++) {
+            int e = (firstEngagement + i) * ENGAGEMENT_RECORD_SIZE;
+            engagementList.add(new CourseEngagement(
+                    string(engagements.getInt(e + ENGAGEMENT_COURSE)),
+                    string(engagements.getInt(e + ENGAGEMENT_TYPE)),
+                    engagements.get(e + ENROLLMENT_MONTH) & 0xFF,
+                    engagements.getShort(e + ENROLLMENT_YEAR),
+                    engagements.getShort(e + LAST_LECTURE),
+                    engagements.get(e + LAST_ACTIVE_MONTH) & 0xFF,
+                    engagements.getShort(e + LAST_ACTIVE_YEAR)));
+        }
+
+        StudentDemographics demographics = new StudentDemographics(
+                string(students.getInt(record + COUNTRY)),
+                students.get(record + ENROLLED_MONTH) & 0xFF,
+                students.getShort(record + ENROLLED_YEAR),
+                students.get(record + AGE) & 0xFF,
+                string(students.getInt(record + GENDER)),
+                (students.get(record + FLAGS) & FLAG_EXPERIENCE) != 0);
+        return new Student(students.getLong(record + STUDENT_ID), demographics, courseList, engagementList);
+    }
+
+    /**
+     * All students, in order, built one at a time as the stream is consumed.
+     */
+    public Stream<Student> students() {
+        return IntStream.range(0, studentCount).mapToObj(this::get);
+    }
+
+    private String string(int id) {
+        return id == NO_STRING ? null : dictionary[id];
+    }
+
+    private int recordOffset(int n) {
+        if (n < 0 || n >= studentCount) {
+            throw new IndexOutOfBoundsException("Student " + n + ", size " + studentCount);
+        }
+        return n * STUDENT_RECORD_SIZE;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long offset, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot section of " + length + " bytes is too large to map");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    }
+}
@@ -0,0 +1,244 @@
+package com.skhanra52.writingFiles.student;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import static com.skhanra52.writingFiles.student.StudentSnapshotFormat.*;
+
+/**
+ * Writes students to the binary snapshot format described in {@link StudentSnapshotFormat}.
+ * <p>
+ * Students are streamed: the student records go straight into the target file, the course and engagement records
+ * into two temporary files next to it. close() appends those sections with FileChannel.transferTo(), then the string
+ * dictionary, and finally fills in the header, so the snapshot is only complete once the writer is closed.
+ */
+public class StudentSnapshotWriter implements Closeable {
+
+    private final Section students;
+    private final Section courses;
+    private final Section engagements;
+    private final Path coursesFile;
+    private final Path engagementsFile;
+    private final StringDictionary dictionary = new StringDictionary();
+    private int studentCount;
+    private int courseCount;
+    private int engagementCount;
+    private boolean closed;
+
+    public StudentSnapshotWriter(Path target) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        coursesFile = Files.createTempFile(directory, target.getFileName() + ".courses-", ".tmp");
+        engagementsFile = Files.createTempFile(directory, target.getFileName() + ".engagements-", ".tmp");
+        students = new Section(FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        students.channel.position(HEADER_SIZE);
+        courses = new Section(FileChannel.open(coursesFile, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        engagements = new Section(FileChannel.open(engagementsFile, StandardOpenOption.READ,
+                StandardOpenOption.WRITE));
+    }
+
+    /**
+     * Appends the student's records.
+     *
+     * @throws IllegalArgumentException when a number of the student doesn't fit its field, see
+     * {@link StudentSnapshotFormat}. Nothing of that student is written then.
+     */
+    public void write(Student student) throws IOException {
+        check(student);
+        int firstCourse = courseCount;
+        for (Course course : student.getCoursesEnrolled()) {
+            ByteBuffer record = courses.reserve(COURSE_RECORD_SIZE);
+            record.putInt(encode(course.courseCode()));
+            record.putInt(encode(course.title()));
+            courseCount++;
+        }
+        int firstEngagement = engagementCount;
+        for (CourseEngagement engagement : student.getEngagements()) {
+            ByteBuffer record = engagements.reserve(ENGAGEMENT_RECORD_SIZE);
+            record.putInt(encode(engagement.getCourseCode()));
+            record.putInt(encode(engagement.getEngagementType()));
+            record.putShort((short) engagement.getEnrollmentYear());
+            record.put((byte) engagement.getEnrollmentMonth());
+            record.put((byte) engagement.getLastActiveMonth());
+            record.putShort((short) engagement.getLastActiveYear());
+            record.putShort((short) engagement.getLastLecture());
+            engagementCount++;
+        }
+
+        ByteBuffer record = students.reserve(STUDENT_RECORD_SIZE);
+        record.putLong(student.getStudentId());
+        record.putInt(encode(student.getCountry()));
+        record.putInt(encode(student.getGender()));
+        record.putShort((short) student.getEnrollmentYear());
+        record.put((byte) student.getEnrollmentMonth());
+        record.put((byte) student.getEnrollmentAge());
+        record.put((byte) (student.hasExperience() ? FLAG_EXPERIENCE : 0));
+        record.put((byte) (courseCount - firstCourse));
+        record.put((byte) (engagementCount - firstEngagement));
+        record.put((byte) 0);
+        record.putInt(firstCourse);
+        record.putInt(firstEngagement);
+        studentCount++;
+    }
+
+    /**
+     * Checks every number of the student against the width of its field before anything is written.
+     */
+    private static void check(Student student) {
+        long id = student.getStudentId();
+        checkRange(id, "course count", student.getCoursesEnrolled().size(), 0, 0xFF);
+        checkRange(id, "engagement count", student.getEngagements().size(), 0, 0xFF);
+        checkRange(id, "enrollment year", student.getEnrollmentYear(), Short.MIN_VALUE, Short.MAX_VALUE);
+        checkRange(id, "enrollment month", student.getEnrollmentMonth(), 0, 0xFF);
+        checkRange(id, "enrollment age", student.getEnrollmentAge(), 0, 0xFF);
+        for (CourseEngagement engagement : student.getEngagements()) {
+            checkRange(id, "engagement enrollment year", engagement.getEnrollmentYear(), Short.MIN_VALUE,
+                    Short.MAX_VALUE);
+            checkRange(id, "engagement enrollment month", engagement.getEnrollmentMonth(), 0, 0xFF);
+            checkRange(id, "last active month", engagement.getLastActiveMonth(), 0, 0xFF);
+            checkRange(id, "last active year", engagement.getLastActiveYear(), Short.MIN_VALUE, Short.MAX_VALUE);
+            checkRange(id, "last lecture", engagement.getLastLecture(), Short.MIN_VALUE, Short.MAX_VALUE);
+        }
+    }
+
+    private static void checkRange(long studentId, String field, int value, int min, int max) {
+        if (value < min || value > max) {
+            throw new IllegalArgumentException("Student " + studentId + ": " + field + " " + value
+                    + " is outside the snapshot's range " + min + " to " + max);
+        }
+    }
+
+    private int encode(String value) {
+        return value == null ? NO_STRING : dictionary.encode(value);
+    }
+
+    public long writeAll(Stream<Student> students) throws IOException {
+        long before = studentCount;
+        try {
+            students.forEachOrdered(student -> {
+                try {
+                    write(student);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return studentCount - before;
+    }
+
+    public int getCount() {
+        return studentCount;
+    }
+
+    /**
+     * Appends the course, engagement and dictionary sections and writes the header.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try (FileChannel out = students.channel; FileChannel courseChannel = courses.channel;
+             FileChannel engagementChannel = engagements.channel) {
+            students.flush();
+            courses.flush();
+            engagements.flush();
+
+            long coursesOffset = HEADER_SIZE + (long) studentCount * STUDENT_RECORD_SIZE;
+            long engagementsOffset = coursesOffset + append(courseChannel, out);
+            long dictionaryOffset = engagementsOffset + append(engagementChannel, out);
+
+            students.reserve(Integer.BYTES).putInt(dictionary.size());
+            for (int id = 0; id < dictionary.size(); id++) {
+                byte[] bytes = dictionary.decode(id).getBytes(StandardCharsets.UTF_8);
+                if (bytes.length > 0xFFFF) {
+                    throw new IOException("Dictionary entry " + id + " is longer than 65535 bytes");
+                }
+                students.reserve(Short.BYTES).putShort((short) bytes.length);
+                students.put(bytes);
+            }
+            students.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC_OFFSET, MAGIC);
+            header.putShort(VERSION_OFFSET, VERSION);
+            header.putInt(STUDENT_COUNT_OFFSET, studentCount);
+            header.putInt(COURSE_COUNT_OFFSET, courseCount);
+            header.putInt(ENGAGEMENT_COUNT_OFFSET, engagementCount);
+            header.putLong(STUDENTS_OFFSET, HEADER_SIZE);
+            header.putLong(COURSES_OFFSET, coursesOffset);
+            header.putLong(ENGAGEMENTS_OFFSET, engagementsOffset);
+            header.putLong(DICTIONARY_OFFSET, dictionaryOffset);
+            while (header.hasRemaining()) {
+                out.write(header, header.position()); // the header starts at file position 0
+            }
+        } finally {
+            Files.deleteIfExists(coursesFile);
+            Files.deleteIfExists(engagementsFile);
+        }
+    }
+
+    private static long append(FileChannel section, FileChannel out) throws IOException {
+        long size = section.size();
+        long position = 0;
+        while (position < size) {
+            long copied = section.transferTo(position, size - position, out);
+            if (copied == 0 && section.size() <= position) {
+                throw new IOException("Snapshot section was truncated to " + section.size() + " bytes");
+            }
+            position += copied;
+        }
+        return size;
+    }
+
+    /**
+     * A buffered channel that hands out room for one fixed size record at a time.
+     */
+    private static final class Section {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+
+        private Section(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private ByteBuffer reserve(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+            return buffer;
+        }
+
+        private void put(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, chunk);
+                offset += chunk;
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -29,10 +29,14 @@ package com.skhanra52.writingFiles.student;
 
  */
 
+import com.skhanra52.compression.Compression;
+
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
@@ -167,29 +171,7 @@ public class WriteFileMain {
          */
 
         try(PrintWriter writer = new PrintWriter("files/take4.txt")){
-            writer.write(header);
-            for (Student student : students){
-                for (var record : student.getEngagementRecords()){
-                    String[] recordData = record.split(",");
-                    writer.printf("%-12d%-14s%2d%12d%3d%-1s".formatted(
-                            student.getStudentId(),  // Student Id
-                            student.getCountry(),           // Country Code
-                            student.getEnrollmentYear(),    // Enrolled year
-                            student.getEnrollmentMonth(),   // Enrolled month
-                            student.getEnrollmentAge(),     // Enrolled age
-                            student.getGender()
-                    ));
-                    writer.printf("%-1s", (student.hasExperience() ? 'Y' : 'N'));
-                    writer.format("%-3s%10.2f%-10s%-4s%-30s",   // alternate to printf
-                            recordData[7],                    // Course code
-                            student.getPercentComplete(recordData[7]),
-                            recordData[8],                    // Engagement Month
-                            recordData[9],                    // Engagement Year
-                            recordData[10]                   // Engagement Type
-                            );
-                    writer.println();
-                }
-            }
+            writeFixedWidth(writer, header, students);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -205,5 +187,143 @@ public class WriteFileMain {
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+
+        /*
+         Every Files.writeString(..., APPEND) call above opens the file, writes one record and closes it again.
+         AppendLog keeps the channel open, collects the records appended by any number of threads into batches and
+         writes a batch at once (when it is big enough, after a few milliseconds, or on sync()). The stats show how
+         many records went into each write and how long the writes took. The header write truncates the log first,
+         so every run starts from an empty log.
+         */
+        Path logFile = Path.of("files/take5.log");
+        try {
+            Files.writeString(logFile, header);
+            try (AppendLog log = new AppendLog(logFile)) {
+                students.parallelStream().forEach(student -> {
+                    for (var record : student.getEngagementRecords()) {
+                        try {
+                            log.append(record);
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                });
+                log.sync();
+                System.out.println(log.getStats());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        /*
+         The students can also be saved in the JSON schema of student-backup.json, which StudentJsonReader reads back.
+         StudentJsonWriter encodes the member names once and streams the students into a buffered channel.
+         */
+        try (StudentJsonWriter writer = new StudentJsonWriter(Path.of("files/students.json"))) {
+            writer.writeAll(students.stream());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        /*
+         CSV and JSON have to be parsed again to get the students back. The binary snapshot stores every student as a
+         fixed size record, with the strings in a dictionary, so after memory mapping the file any student can be
+         read by its position without reading the ones before it.
+         */
+        Path snapshot = Path.of("files/students.bin");
+        try (StudentSnapshotWriter writer = new StudentSnapshotWriter(snapshot)) {
+            writer.writeAll(students.stream());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        try {
+            StudentSnapshotReader reader = new StudentSnapshotReader(snapshot);
+            System.out.println("Last student in the snapshot: " + reader.get(reader.size() - 1));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        /*
+         All the above examples build every row with String.formatted() (getEngagementRecords() formats the
+         demographics, the engagement and then the row), and most of them collect the rows before writing.
+         For a large export that is mostly garbage. EngagementCsvWriter copies the fields from the accessors straight
+         into one reusable byte buffer over a FileChannel, and takes a Stream<Student>, so nothing is materialized.
+         The rows are byte for byte the ones getEngagementRecords() returns.
+         */
+        try (EngagementCsvWriter writer = new EngagementCsvWriter(Path.of("files/take5.csv"))) {
+            writer.writeHeader(header);
+            writer.writeAll(students.stream());
+            System.out.println("EngagementCsvWriter wrote " + writer.getRowCount() + " rows");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        /*
+         The same export on all cores: ShardedCsvExporter formats the students into one shard file per worker thread,
+         then concatenates the shards with FileChannel.transferTo(). With ordered = true the result is identical to
+         the single-threaded EngagementCsvWriter output, with false the workers balance the load between them and
+         rows are no longer sorted by studentId.
+         */
+        try {
+            long rows = new ShardedCsvExporter(true).export(students, header, path);
+            System.out.println("ShardedCsvExporter wrote " + rows + " rows to " + path);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        /*
+         The writers compress when the file name asks for it: ".gz" is a normal GZIP file, ".zblk" is cut into
+         independently compressed blocks with an index at the end, so ChunkedLineSource can decompress the blocks
+         in parallel. The readers detect the compression themselves. The fixed-width text of take4.txt goes through
+         a PrintWriter over the compressing channel.
+         */
+        try (EngagementCsvWriter writer = new EngagementCsvWriter(Path.of("files/take5.csv.gz"));
+             StudentJsonWriter json = new StudentJsonWriter(Path.of("files/students.json.gz"));
+             PrintWriter fixedWidth = new PrintWriter(Channels.newWriter(
+                     Compression.GZIP.newWritableChannel(Path.of("files/take4.txt.gz")), StandardCharsets.UTF_8))) {
+            writer.writeHeader(header);
+            writer.writeAll(students.stream());
+            json.writeAll(students.stream());
+            writeFixedWidth(fixedWidth, header, students);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        try {
+            Path blocks = Path.of("files/take5.csv.zblk");
+            long rows = new ShardedCsvExporter(true).export(students, header, blocks);
+            System.out.printf("%d rows, %d byte as CSV, %d byte as GZIP, %d byte in blocks%n", rows, Files.size(path),
+                    Files.size(Path.of("files/take5.csv.gz")), Files.size(blocks));
+            StudentColumnStore store = StudentColumnStore.loadCsv(blocks);
+            System.out.println("Read back from the blocks: " + store.size() + " students, "
+                    + store.engagementCount() + " engagements");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void writeFixedWidth(PrintWriter writer, String header, List<Student> students) {
+        writer.write(header);
+        for (Student student : students){
+            for (var record : student.getEngagementRecords()){
+                String[] recordData = record.split(",");
+                writer.printf("%-12d%-14s%2d%12d%3d%-1s".formatted(
+                        student.getStudentId(),  // Student Id
+                        student.getCountry(),           // Country Code
+                        student.getEnrollmentYear(),    // Enrolled year
+                        student.getEnrollmentMonth(),   // Enrolled month
+                        student.getEnrollmentAge(),     // Enrolled age
+                        student.getGender()
+                ));
+                writer.printf("%-1s", (student.hasExperience() ? 'Y' : 'N'));
+                writer.format("%-3s%10.2f%-10s%-4s%-30s",   // alternate to printf
+                        recordData[7],                    // Course code
+                        student.getPercentComplete(recordData[7]),
+                        recordData[8],                    // Engagement Month
+                        recordData[9],                    // Engagement Year
+                        recordData[10]                   // Engagement Type
+                        );
+                writer.println();
+            }
+        }
     }
 }